@@ -3,6 +3,8 @@ package com.example.ordersystem;
 import com.example.ordersystem.model.*;
 import com.example.ordersystem.service.*;
 import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -27,6 +29,8 @@ import java.util.List;
 @ConditionalOnProperty(name = "app.init-db", havingValue="true")
 @AllArgsConstructor
 public class DbInitializer implements CommandLineRunner {
+    private static final Logger log = LoggerFactory.getLogger(DbInitializer.class);
+
     @Autowired
     private AccountService accountService;
 
@@ -154,7 +158,7 @@ public class DbInitializer implements CommandLineRunner {
                     itemImageService.saveItemImage(item.getId(),file);
                 }
                 catch(IOException e){
-                    e.printStackTrace();
+                    log.error("Could not save the sample image {} of item {}", imgname, item.getId(), e);
                 }
             }
         }
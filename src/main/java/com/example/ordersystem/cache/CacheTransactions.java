@@ -0,0 +1,78 @@
+package com.example.ordersystem.cache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * This class contains the transaction rules shared by the in-memory caches and indexes.
+ * A read-write transaction may hold changes that are not committed yet, so it must neither read from
+ * nor populate a cache, and any cache update caused by a write only becomes visible once the transaction ends.
+ */
+public final class CacheTransactions {
+
+    private CacheTransactions(){}
+
+    /**
+     * Method to check whether the current caller may be served from (and may populate) a cache
+     * @return True if there is no transaction, or the current transaction is read-only
+     */
+    public static boolean canUseCache(){
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * Method to run an action once the current transaction has committed or rolled back.
+     * If there is no transaction, the action is run straight away.
+     * @param action - The action to run, usually a cache eviction
+     */
+    public static void afterCompletion(Runnable action){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Method to run an action only if the current transaction commits.
+     * If there is no transaction, the action is run straight away.
+     * @param action - The action to run, usually an incremental index update
+     */
+    public static void afterCommit(Runnable action){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Method to run an action only if the current transaction rolls back.
+     * If there is no transaction, the action is never run.
+     * @param action - The action to run, usually the cleanup of a file written during the transaction
+     */
+    public static void afterRollback(Runnable action){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status == STATUS_ROLLED_BACK){
+                    action.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.ordersystem.cache;
+
+import com.example.ordersystem.model.CartSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * This class is the in-process cache of the cart summaries shown on the cart icon of every page, by account ID.
+ * A summary is read from the database once and dropped when its cart changes, and changes to an item are applied
+ * to every summary holding it, so showing the cart icon mostly needs no database query.
+ * Summaries of the least recently active accounts are dropped first.
+ */
+@Component
+public class CartSummaryCache implements MeterBinder {
+    private final LruCache<Long, CartSummary> summaries;
+
+    //Bumped on every change, so a database load that started before a change is never cached
+    private long generation = 0;
+
+    public CartSummaryCache(@Value("${app.cart-cache.max-accounts:10000}") int maxAccounts){
+        this.summaries = new LruCache<>(maxAccounts);
+    }
+
+    /**
+     * Method to get the cart summary of an account from the cache, loading and caching it on a miss
+     * @param accountId - The ID of the account
+     * @param loader - The database lookup to run on a miss
+     * @return The cart summary of the account
+     */
+    public CartSummary getSummary(Long accountId, Supplier<CartSummary> loader){
+        CartSummary summary = summaries.get(accountId);
+        if(summary != null){
+            return summary;
+        }
+        long loadGeneration = currentGeneration();
+        summary = loader.get();
+        synchronized (this){
+            if(loadGeneration == generation){
+                summaries.put(accountId, summary);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Method to update the price of an item in every cart holding it once the current transaction commits
+     * @param itemId - The ID of the item
+     * @param price - The new price of the item
+     */
+    public void priceChanged(Long itemId, BigDecimal price){
+        updateAll(summary -> summary.withPrice(itemId, price));
+    }
+
+    /**
+     * Method to remove an item from every cart once the current transaction commits,
+     * after the item has been deleted or made unavailable
+     * @param itemId - The ID of the item
+     */
+    public void itemRemovedEverywhere(Long itemId){
+        updateAll(summary -> summary.withoutItem(itemId));
+    }
+
+    /**
+     * Method to drop the summary of an account when the current transaction ends, after a change to its cart
+     * or the deletion of the account. The summary is loaded again on its next request: writing the new amounts
+     * instead could leave the older of two concurrent changes in the cache, as they may end in either order.
+     * @param accountId - The ID of the account
+     */
+    public void invalidate(Long accountId){
+        CacheTransactions.afterCompletion(() -> {
+            synchronized (this){
+                generation++;
+                summaries.remove(accountId);
+            }
+        });
+    }
+
+    /**
+     * Method to drop every summary when the current transaction ends, after a change to many carts at once
+     */
+    public void invalidateAll(){
+        CacheTransactions.afterCompletion(() -> {
+            synchronized (this){
+                generation++;
+                summaries.clear();
+            }
+        });
+    }
+
+    private void updateAll(UnaryOperator<CartSummary> change){
+        CacheTransactions.afterCommit(() -> {
+            synchronized (this){
+                generation++;
+                summaries.updateAll((accountId, summary) -> change.apply(summary));
+            }
+        });
+    }
+
+    private synchronized long currentGeneration(){
+        return generation;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cart.cache.gets", summaries, LruCache::getHits)
+                .tags("result", "hit").register(registry);
+        FunctionCounter.builder("cart.cache.gets", summaries, LruCache::getMisses)
+                .tags("result", "miss").register(registry);
+        FunctionCounter.builder("cart.cache.evictions", summaries, LruCache::getEvictions)
+                .register(registry);
+        Gauge.builder("cart.cache.size", summaries, LruCache::size)
+                .register(registry);
+    }
+
+    public long getHits(){
+        return summaries.getHits();
+    }
+
+    public long getMisses(){
+        return summaries.getMisses();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.ordersystem.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps the version counters of the catalog and of each item, used as ETags by the item REST endpoints.
+ * Every change to an item must call itemChanged, so clients holding the old version get the new content.
+ * A version is bumped only once the change is committed, and readers must read the version before the content:
+ * content read at the same time as a change may then be sent with the old version, but never with the new one.
+ */
+@Component
+public class CatalogVersions {
+    //Part of every ETag, so the versions counted before a restart never match the new ones
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+    //The catalog version of the last change to each item, items never changed since startup are at version 0.
+    //Deleted items are kept so their old ETag does not come back.
+    private final Map<Long, Long> itemVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Method to bump the version of an item and of the whole catalog when the current transaction ends
+     * @param id - The ID of the item that has been saved, changed or deleted
+     */
+    public void itemChanged(Long id){
+        CacheTransactions.afterCompletion(() -> bump(id));
+    }
+
+    /**
+     * Method to bump the versions of many items and of the whole catalog at once when the current transaction ends
+     * @param ids - The IDs of the items that have been saved, changed or deleted
+     */
+    public void itemsChanged(Collection<Long> ids){
+        CacheTransactions.afterCompletion(() -> {
+            long version = catalogVersion.incrementAndGet();
+            for(Long id: ids){
+                itemVersions.put(id, version);
+            }
+        });
+    }
+
+    private void bump(Long id){
+        long version = catalogVersion.incrementAndGet();
+        if(id != null){
+            itemVersions.put(id, version);
+        }
+    }
+
+    /**
+     * Method to get the strong ETag of the whole catalog
+     * @return The ETag value, without quotes
+     */
+    public String getCatalogETag(){
+        return epoch + "-" + catalogVersion.get();
+    }
+
+    /**
+     * Method to get the strong ETag of a single item
+     * @param id - The ID of the item
+     * @return The ETag value, without quotes
+     */
+    public String getItemETag(Long id){
+        return epoch + "-" + id + "-" + itemVersions.getOrDefault(id, 0L);
+    }
+}
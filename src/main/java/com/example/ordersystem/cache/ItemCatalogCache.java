@@ -0,0 +1,159 @@
+package com.example.ordersystem.cache;
+
+import com.example.ordersystem.model.Item;
+import com.example.ordersystem.model.ItemSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This class is the in-process read-through cache of the shop catalog.
+ * It keeps a size-bounded LRU of items with their details by ID,
+ * plus a snapshot of the summaries of the whole catalog sorted by ID.
+ * Every change to an item must call invalidate so the cached copies are dropped.
+ */
+@Component
+public class ItemCatalogCache implements MeterBinder {
+    private final LruCache<Long, Item> items;
+    private volatile List<ItemSummary> catalog;
+
+    private final AtomicLong catalogHits = new AtomicLong();
+    private final AtomicLong catalogMisses = new AtomicLong();
+    private final AtomicLong catalogEvictions = new AtomicLong();
+
+    //Bumped on every invalidation, so a database load that started before a change is never cached
+    private long generation = 0;
+
+    public ItemCatalogCache(@Value("${app.catalog-cache.max-items:1000}") int maxItems){
+        this.items = new LruCache<>(maxItems);
+    }
+
+    /**
+     * Method to get an item from the cache, loading and caching it on a miss
+     * @param id - The ID of the item to get
+     * @param loader - The database lookup to run on a miss, which may return null
+     * @return The item, or null if it does not exist
+     */
+    public Item getItem(Long id, Supplier<Item> loader){
+        Item item = items.get(id);
+        if(item != null){
+            return item;
+        }
+        long loadGeneration = currentGeneration();
+        item = loader.get();
+        if(item != null){
+            synchronized (this){
+                if(loadGeneration == generation){
+                    items.put(id, item);
+                }
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Method to get the summaries of the whole catalog from the cache, loading and caching them on a miss
+     * @param loader - The database lookup of all item summaries sorted by ID
+     * @return An unmodifiable List of all item summaries sorted by ID
+     */
+    public List<ItemSummary> getCatalog(Supplier<List<ItemSummary>> loader){
+        List<ItemSummary> snapshot = catalog;
+        if(snapshot != null){
+            catalogHits.incrementAndGet();
+            return snapshot;
+        }
+        catalogMisses.incrementAndGet();
+        long loadGeneration = currentGeneration();
+        snapshot = Collections.unmodifiableList(new ArrayList<>(loader.get()));
+        synchronized (this){
+            if(loadGeneration == generation){
+                catalog = snapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Method to drop the cached copies of an item and the catalog snapshot.
+     * They are dropped now and again when the current transaction ends,
+     * so a reader cannot re-cache the old state before the change is committed.
+     * @param id - The ID of the item that has changed
+     */
+    public void invalidate(Long id){
+        evict(id);
+        CacheTransactions.afterCompletion(() -> evict(id));
+    }
+
+    /**
+     * Method to drop every cached item and the catalog snapshot, now and when the current transaction ends
+     */
+    public void invalidateAll(){
+        evictAll();
+        CacheTransactions.afterCompletion(this::evictAll);
+    }
+
+    private synchronized long currentGeneration(){
+        return generation;
+    }
+
+    private synchronized void evict(Long id){
+        generation++;
+        if(id != null){
+            items.remove(id);
+        }
+        dropCatalog();
+    }
+
+    private synchronized void evictAll(){
+        generation++;
+        items.clear();
+        dropCatalog();
+    }
+
+    private void dropCatalog(){
+        if(catalog != null){
+            catalog = null;
+            catalogEvictions.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("catalog.cache.gets", items, LruCache::getHits)
+                .tags("cache", "items", "result", "hit").register(registry);
+        FunctionCounter.builder("catalog.cache.gets", items, LruCache::getMisses)
+                .tags("cache", "items", "result", "miss").register(registry);
+        FunctionCounter.builder("catalog.cache.evictions", items, LruCache::getEvictions)
+                .tags("cache", "items").register(registry);
+        Gauge.builder("catalog.cache.size", items, LruCache::size)
+                .tags("cache", "items").register(registry);
+
+        FunctionCounter.builder("catalog.cache.gets", catalogHits, AtomicLong::get)
+                .tags("cache", "catalog", "result", "hit").register(registry);
+        FunctionCounter.builder("catalog.cache.gets", catalogMisses, AtomicLong::get)
+                .tags("cache", "catalog", "result", "miss").register(registry);
+        FunctionCounter.builder("catalog.cache.evictions", catalogEvictions, AtomicLong::get)
+                .tags("cache", "catalog").register(registry);
+    }
+
+    public long getHits(){
+        return items.getHits() + catalogHits.get();
+    }
+
+    public long getMisses(){
+        return items.getMisses() + catalogMisses.get();
+    }
+
+    public long getEvictions(){
+        return items.getEvictions() + catalogEvictions.get();
+    }
+}
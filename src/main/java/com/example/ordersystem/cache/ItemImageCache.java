@@ -0,0 +1,165 @@
+package com.example.ordersystem.cache;
+
+import com.example.ordersystem.model.ItemImage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+/**
+ * This class is the in-process cache of item images.
+ * It keeps an LRU of image records by ID, so serving an image does not query the database,
+ * and an LRU of small image contents bounded by their total size in bytes, so hot images are sent from memory.
+ * Contents can be kept off-heap in direct buffers, so a large cache does not slow down garbage collection.
+ * Contents never change under their key, so they only have to be dropped when they are deleted.
+ */
+@Component
+public class ItemImageCache implements MeterBinder {
+    private final LruCache<Long, ItemImage> images;
+    private final LruCache<String, ByteBuffer> contents;
+    private final int maxContentBytes;
+    private final boolean offHeap;
+
+    //Bumped on every invalidation, so a database load that started before a change is never cached
+    private long generation = 0;
+
+    /**
+     * Interface of the store lookup run on a content miss
+     */
+    public interface ContentLoader {
+        byte[] load() throws IOException;
+    }
+
+    public ItemImageCache(@Value("${app.image-cache.max-images:1000}") int maxImages,
+                          @Value("${app.image-cache.max-bytes:67108864}") long maxBytes,
+                          @Value("${app.image-cache.max-content-bytes:49152}") int maxContentBytes,
+                          @Value("${app.image-cache.off-heap:false}") boolean offHeap){
+        this.images = new LruCache<>(maxImages);
+        this.contents = new LruCache<>(maxBytes, ByteBuffer::capacity, buffer -> {});
+        this.maxContentBytes = maxContentBytes;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Method to get an image record from the cache, loading and caching it on a miss
+     * @param id - The ID of the image to get
+     * @param loader - The database lookup to run on a miss, which may return null
+     * @return The image, or null if it does not exist
+     */
+    public ItemImage getImage(Long id, Supplier<ItemImage> loader){
+        ItemImage image = images.get(id);
+        if(image != null){
+            return image;
+        }
+        long loadGeneration = currentGeneration();
+        image = loader.get();
+        if(image != null){
+            synchronized (this){
+                if(loadGeneration == generation){
+                    images.put(id, image);
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Method to get an image content from the cache, loading and caching it on a miss.
+     * Contents larger than the maximum content size are never cached.
+     * @param key - The key of the content in the image store
+     * @param length - The size of the content in bytes
+     * @param loader - The image store lookup to run on a miss
+     * @return A read-only buffer of the whole content, or null if the content is too large to be cached
+     * @throws IOException - If the content cannot be loaded
+     */
+    public ByteBuffer getContent(String key, long length, ContentLoader loader) throws IOException {
+        if(length > maxContentBytes){
+            return null;
+        }
+        ByteBuffer content = contents.get(key);
+        if(content == null){
+            byte[] bytes = loader.load();
+            if(offHeap){
+                content = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+                content.flip();
+            }else{
+                content = ByteBuffer.wrap(bytes);
+            }
+            contents.put(key, content);
+        }
+        //Every reader gets its own position and limit
+        return content.asReadOnlyBuffer();
+    }
+
+    /**
+     * Method to drop the cached record of an image, now and again when the current transaction ends
+     * @param id - The ID of the image that has been deleted or changed
+     */
+    public void invalidateImage(Long id){
+        evictImage(id);
+        CacheTransactions.afterCompletion(() -> evictImage(id));
+    }
+
+    /**
+     * Method to drop a cached content and its thumbnails, once the content has been deleted from the image store
+     * @param hash - The SHA-256 of the deleted content
+     */
+    public void invalidateContent(String hash){
+        contents.removeKeys(key -> key.startsWith(hash));
+        CacheTransactions.afterCompletion(() -> contents.removeKeys(key -> key.startsWith(hash)));
+    }
+
+    private synchronized long currentGeneration(){
+        return generation;
+    }
+
+    private synchronized void evictImage(Long id){
+        generation++;
+        images.remove(id);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("image.cache.gets", images, LruCache::getHits)
+                .tags("cache", "images", "result", "hit").register(registry);
+        FunctionCounter.builder("image.cache.gets", images, LruCache::getMisses)
+                .tags("cache", "images", "result", "miss").register(registry);
+        FunctionCounter.builder("image.cache.evictions", images, LruCache::getEvictions)
+                .tags("cache", "images").register(registry);
+        Gauge.builder("image.cache.size", images, LruCache::size)
+                .tags("cache", "images").register(registry);
+
+        FunctionCounter.builder("image.cache.gets", contents, LruCache::getHits)
+                .tags("cache", "contents", "result", "hit").register(registry);
+        FunctionCounter.builder("image.cache.gets", contents, LruCache::getMisses)
+                .tags("cache", "contents", "result", "miss").register(registry);
+        FunctionCounter.builder("image.cache.evictions", contents, LruCache::getEvictions)
+                .tags("cache", "contents").register(registry);
+        Gauge.builder("image.cache.size", contents, LruCache::size)
+                .tags("cache", "contents").register(registry);
+        Gauge.builder("image.cache.bytes", contents, LruCache::getWeight)
+                .tags("cache", "contents").baseUnit("bytes").register(registry);
+        Gauge.builder("image.cache.hit.ratio", this, ItemImageCache::getContentHitRatio)
+                .tags("cache", "contents").register(registry);
+    }
+
+    /**
+     * Method to get the share of content lookups answered from memory since startup
+     * @return The hit ratio between 0 and 1, or 0 if no content has been looked up yet
+     */
+    public double getContentHitRatio(){
+        long hits = contents.getHits();
+        long total = hits + contents.getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public long getContentBytes(){
+        return contents.getWeight();
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.ordersystem.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class is a small thread-safe least-recently-used map with a maximum total weight.
+ * By default every entry weighs 1, so the maximum is a number of entries.
+ * It counts its hits, misses and evictions so they can be exported as metrics.
+ * @param <K> - The type of the keys
+ * @param <V> - The type of the cached values
+ */
+public class LruCache<K, V> {
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final Consumer<V> onEvict;
+    //An access-ordered LinkedHashMap keeps the least recently used entry at its head
+    private final Map<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LruCache(int maxEntries){
+        this(maxEntries, value -> {});
+    }
+
+    /**
+     * Create a cache which hands every evicted value to a listener, to release what the value holds
+     * @param maxEntries - The maximum number of entries
+     * @param onEvict - The listener called with each value evicted to make room, while the cache is locked
+     */
+    public LruCache(int maxEntries, Consumer<V> onEvict){
+        this(maxEntries, value -> 1, onEvict);
+    }
+
+    /**
+     * Create a cache bounded by the total weight of its values instead of their number
+     * @param maxWeight - The maximum total weight of the cached values
+     * @param weigher - The function giving the weight of a value, which must not change while it is cached
+     * @param onEvict - The listener called with each value evicted to make room, while the cache is locked
+     */
+    public LruCache(long maxWeight, ToLongFunction<V> weigher, Consumer<V> onEvict){
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * Method to get a cached value and record a hit or a miss
+     * @param key - The key of the value to get
+     * @return The cached value, or null if it is not cached
+     */
+    public synchronized V get(K key){
+        V value = entries.get(key);
+        if(value == null){
+            misses.incrementAndGet();
+        }else{
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Method to cache a value, evicting the least recently used entries if the cache is full
+     * @param key - The key of the value
+     * @param value - The value to cache
+     */
+    public synchronized void put(K key, V value){
+        V old = entries.put(key, value);
+        if(old != null){
+            weight -= weigher.applyAsLong(old);
+        }
+        weight += weigher.applyAsLong(value);
+        evictOverweight();
+    }
+
+    /**
+     * Method to cache a value unless a value is cached already for its key
+     * @param key - The key of the value
+     * @param value - The value to cache
+     * @return The value cached before, or null if the given value has been cached
+     */
+    public synchronized V putIfAbsent(K key, V value){
+        V old = entries.get(key);
+        if(old != null){
+            return old;
+        }
+        put(key, value);
+        return null;
+    }
+
+    private void evictOverweight(){
+        Iterator<V> values = entries.values().iterator();
+        while(weight > maxWeight && values.hasNext()){
+            V eldest = values.next();
+            values.remove();
+            weight -= weigher.applyAsLong(eldest);
+            evictions.incrementAndGet();
+            onEvict.accept(eldest);
+        }
+    }
+
+    /**
+     * Method to remove a cached value
+     * @param key - The key of the value to remove
+     * @return The removed value, or null if it was not cached
+     */
+    public synchronized V remove(K key){
+        V value = entries.remove(key);
+        if(value != null){
+            weight -= weigher.applyAsLong(value);
+        }
+        return value;
+    }
+
+    /**
+     * Method to remove a cached value only if it is still the value cached for its key
+     * @param key - The key of the value to remove
+     * @param value - The value to remove
+     * @return True if the value has been removed
+     */
+    public synchronized boolean remove(K key, V value){
+        if(entries.remove(key, value)){
+            weight -= weigher.applyAsLong(value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to remove the cached values of every key matching a condition
+     * @param condition - The condition on the keys to remove
+     */
+    public synchronized void removeKeys(Predicate<K> condition){
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<K, V> entry = iterator.next();
+            if(condition.test(entry.getKey())){
+                iterator.remove();
+                weight -= weigher.applyAsLong(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Method to replace every cached value by the result of a function, without changing how recently it was used
+     * @param function - The function giving the new value of a key from its current value, or null to remove it
+     */
+    public synchronized void updateAll(BiFunction<K, V, V> function){
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<K, V> entry = iterator.next();
+            V value = function.apply(entry.getKey(), entry.getValue());
+            weight -= weigher.applyAsLong(entry.getValue());
+            if(value == null){
+                iterator.remove();
+            }else{
+                entry.setValue(value);
+                weight += weigher.applyAsLong(value);
+            }
+        }
+        evictOverweight();
+    }
+
+    /**
+     * Method to remove every cached value
+     */
+    public synchronized void clear(){
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public synchronized long getWeight(){
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
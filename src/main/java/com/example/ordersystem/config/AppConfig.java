@@ -1,27 +1,33 @@
 package com.example.ordersystem.config;
 
 import com.example.ordersystem.model.Item;
+import com.zaxxer.hikari.HikariDataSource;
 import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import org.springframework.orm.hibernate5.HibernateTransactionManager;
 import org.springframework.orm.hibernate5.LocalSessionFactoryBean;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.web.servlet.config.annotation.*;
 
+import javax.sql.DataSource;
 import java.util.Properties;
 
 /**
  * This class is used for configuring the application properties and database credentials.
  */
-@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class})
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
 @Configuration
 @EnableTransactionManagement
 @EnableJpaRepositories("com.example.ordersystem.repository")
@@ -33,8 +39,38 @@ public class AppConfig implements WebMvcConfigurer {
         return new Item();
     }
 
+    /**
+     * Read the database url and credentials from the spring.datasource.* properties
+     * @return The properties used to build the connection pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    /**
+     * Create the pooled DataSource shared by Hibernate and every repository.
+     * Pool sizing, validation and leak detection are bound from the spring.datasource.hikari.* properties,
+     * and the pool metrics (active, idle, pending, acquire time) are exported through the actuator metrics endpoint.
+     * @param dataSourceProperties - The database url and credentials
+     * @return The Hikari connection pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Create the Hibernate session factory on top of the connection pool
+     * @param dataSource - The connection pool
+     * @param generateStatistics - Whether Hibernate counts its queries and statements, used by the tests
+     * @return The session factory bean
+     */
     @Bean(name="entityManagerFactory")
-    public LocalSessionFactoryBean sessionFactory(){
+    public LocalSessionFactoryBean sessionFactory(DataSource dataSource,
+                                                  @Value("${app.hibernate.generate-statistics:false}") boolean generateStatistics){
 
         Properties properties = new Properties();
         //For Postgresql
@@ -43,30 +79,32 @@ public class AppConfig implements WebMvcConfigurer {
         //properties.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
         properties.put("hibernate.show_sql", true);
         properties.put("hibernate.hbm2ddl.auto", "update");
+        //Load the collections of several entities in one statement instead of one per entity
+        properties.put("hibernate.default_batch_fetch_size", 16);
+        properties.put("hibernate.generate_statistics", generateStatistics);
 
         LocalSessionFactoryBean sessionFactoryBean = new LocalSessionFactoryBean();
 
         sessionFactoryBean.setPackagesToScan("com.example.ordersystem.model");
 
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName("org.postgresql.Driver");
-
-        // Heroku's database credentials
-//       dataSource.setUrl("jdbc:postgresql://ec2-44-197-40-76.compute-1.amazonaws.com:5432/dfh63mee24494k");
-//       dataSource.setUsername("renfdjhmcquulb");
-//       dataSource.setPassword("4e9deeb856b3dd2fd6ce9d26ff442a36298163355cb85354a4f9f499a68520b4");
-
-        // Local database credentials
-         dataSource.setUrl("jdbc:postgresql://localhost:5432/cosc2101");
-         dataSource.setUsername("postgres");
-         dataSource.setPassword("super123");
-
+        //Connections are borrowed from the pool instead of being opened for every transaction
         sessionFactoryBean.setDataSource(dataSource);
         sessionFactoryBean.setHibernateProperties(properties);
 
         return sessionFactoryBean;
     }
 
+    /**
+     * Create the JdbcTemplate used for bulk statements that Hibernate cannot batch.
+     * It joins the Hibernate transaction of the caller, since the transaction manager shares the same connection pool.
+     * @param dataSource - The connection pool
+     * @return The JdbcTemplate
+     */
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource){
+        return new JdbcTemplate(dataSource);
+    }
+
     @Bean
     public HibernateTransactionManager transactionManager(SessionFactory sessionFactory){
         HibernateTransactionManager tx = new HibernateTransactionManager(sessionFactory);
@@ -2,19 +2,25 @@ package com.example.ordersystem.controller;
 
 import com.example.ordersystem.model.Account;
 import com.example.ordersystem.model.Cart;
+import com.example.ordersystem.model.CartOperation;
+import com.example.ordersystem.model.CartSummary;
 import com.example.ordersystem.model.Item;
 import com.example.ordersystem.service.AccountService;
 import com.example.ordersystem.service.CartService;
 import com.example.ordersystem.service.ItemService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * This class is used for routing cart items and CRUD from the list of cart items
@@ -88,13 +94,17 @@ public class CartController {
         Item itemToAdd = itemService.getItem(itemId).get();
 
         //Check if the item is available, if it is, add it to the cart
-        // if not, redirect back to the item details page with the appropriate message
-        if(itemToAdd.isAvailability()){
-            int addedAmount = cartService.addItem(itemId, amount, user);
-            return "redirect:/shopping-cart";
-        }else{
-            return "redirect:/shop-details?id="+itemId;
+        // if not, or if the amount is not valid, redirect back to the item details page
+        if(itemToAdd.isAvailability() && amount > 0){
+            try {
+                cartService.addItem(itemId, amount, user);
+                return "redirect:/shopping-cart";
+            }
+            catch (NoSuchElementException e) {
+                //The item has been made unavailable since it was read
+            }
         }
+        return "redirect:/shop-details?id="+itemId;
     }
 
     /**
@@ -124,9 +134,38 @@ public class CartController {
         Long userId = loggedInAcc.getId();
         Account user = accountService.getAccountById(userId);
 
-        //Call method to update the quantity according to the amount provided, and the subtotal price of that item
-        int smallSum = cartService.updateAmount(amount, itemId, user);
+        //Call method to update the quantity according to the amount provided, and the subtotal price of that item.
+        // An invalid amount, or an item no longer in the cart, leaves the cart as it is and the page tells the user
+        try {
+            cartService.updateAmount(amount, itemId, user);
+        }
+        catch (IllegalArgumentException | NoSuchElementException e) {
+            return "redirect:/shopping-cart?updateError";
+        }
 
         return "redirect:/shopping-cart";
     }
+
+    /**
+     * Mapping of the JSON endpoint to apply several changes to the shopping cart at once, without reloading the page.
+     * The body is a list of operations like {"type": "add"|"set"|"remove", "itemId": 1, "amount": 2},
+     * applied in order in one transaction.
+     * @param operations - The changes to apply to the cart
+     * @return The new cart summary with the amount and price of each item,
+     *         or a 400 with the reason in its message if an operation is not valid, nothing is changed then
+     */
+    @PostMapping(path = "/shopping-cart/operations", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> applyOperations(@RequestBody List<CartOperation> operations) {
+        //The account ID of the logged in user is enough, the account itself is not loaded
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = ((Account)auth.getPrincipal()).getId();
+
+        try {
+            return ResponseEntity.ok(cartService.applyOperations(userId, operations));
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
 }
\ No newline at end of file
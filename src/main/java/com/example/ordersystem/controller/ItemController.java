@@ -2,16 +2,20 @@ package com.example.ordersystem.controller;
 
 import com.example.ordersystem.model.*;
 import com.example.ordersystem.service.*;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
+import com.example.ordersystem.storage.StoredContent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -19,12 +23,22 @@ import java.util.*;
  */
 @Controller
 public class ItemController {
+    //Sent with every image, images are never changed once uploaded so they can be cached for a year
+    private static final String IMAGE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    //Request attributes Tomcat uses to send a file with sendfile once the handler returns
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private ItemService itemService;
     @Autowired
     private ItemImageService itemImageService;
     @Autowired
     private UnifiedService unifiedService;
+    @Value("${app.image-store.sendfile-min-size:49152}")
+    private long sendfileMinSize;
 
     /**
      * Mapping for the path to the shop page which displays all items in the database
@@ -33,6 +47,7 @@ public class ItemController {
      * @param sortField - The sort field to sort items by name or price. The default is sort by ID.
      * @param filterField - The filter field to filter items by category. The default is to show all.
      * @param searchField - The search field to search items. The default is an empty string.
+     * @param cursor - The keyset cursor of the page to show, set by the previous and next buttons. The default is to use the page number.
      * @return A String which is the processed shop template, populated with the required items
      */
     @GetMapping("/shop")
@@ -40,56 +55,36 @@ public class ItemController {
                           @RequestParam(defaultValue = "1") int page,
                           @RequestParam(name="sortField", defaultValue = "id") String sortField,
                           @RequestParam(name="filterField", defaultValue = "All") String filterField ,
-                          @RequestParam(name="searchField", defaultValue = "") String searchField
+                          @RequestParam(name="searchField", defaultValue = "") String searchField,
+                          @RequestParam(name="cursor", defaultValue = "") String cursor
     ) {
 
-
-        // The total number of items
-        int totalNum = itemService.getAllItems().size();
-
-        //Create pagination for the items
-        Pagination pagination = new Pagination(totalNum, page);
-
-        int beginIndex = pagination.getBeginIndex();
-
         // Max number of items in a page
-        int pageSize = pagination.getPageSize();
+        int pageSize = Pagination.DEFAULT_PAGE_SIZE;
 
         // Check if value of sortField is valid
-        String[] validSort = new String[]{"id","name","priceHTL","priceLTH"};
+        String[] validSort = new String[]{"id","name","priceHTL","priceLTH","relevance"};
         if(!Arrays.asList(validSort).contains(sortField)){
             sortField = "id";
         }
 
-        // Get all items
-        List<Item> fullItemList = itemService.getAllItems();
-        //Create iterator to iterate through item list
-        Iterator<Item> itemIterator = fullItemList.listIterator();
-
         // Get a list of categories of items
-        List<String> categoryListwithDuplicates = new ArrayList<>();
-        categoryListwithDuplicates.add("All");
-        //Use iterator to iterate through the item list and add all categories
-        while(itemIterator.hasNext()){
-            categoryListwithDuplicates.add(itemIterator.next().getCategory());
-        }
-        List<String> categoryList = new ArrayList<String>(new LinkedHashSet<>(categoryListwithDuplicates));
+        List<String> categoryList = itemService.getCategoryList();
 
         // Check if value of filterField is valid
         if(!categoryList.contains(filterField)){
             filterField = "All";
         }
 
-        // Separate the final item list into different pages
-        List<Item> shopList = itemService.findListPaging(beginIndex, pageSize, filterField, sortField, searchField);
+        // Get the page of items together with the number of items matching the filter and search.
+        // If user try to get a page larger than the highest page, the first page is returned
+        ItemPage itemPage = itemService.findShopPage(cursor, page, pageSize, filterField, sortField, searchField);
+        List<ItemSummary> shopList = itemPage.getItems();
 
         // Get pagination for item list when Filter is used
-        pagination = new Pagination(itemService.findNumOfSearchedItems(filterField, searchField)+1, page);
-
-        //If user try to get a page larger than the highest page, reset page to 1
-        if(page>pagination.getLastPage()){
-            pagination = new Pagination(itemService.findNumOfSearchedItems(filterField, searchField)+1, 1);
-        }
+        Pagination pagination = new Pagination(itemPage.getTotalItems()+1, itemPage.getPage());
+        pagination.setPrevCursor(itemPage.getPrevCursor());
+        pagination.setNextCursor(itemPage.getNextCursor());
 
         //Add the fields and item list to the model so Thymeleaf can process it on the frontend template
         model.addAttribute("filterField", filterField);
@@ -143,7 +138,7 @@ public class ItemController {
      */
     @GetMapping(path = "/item-list")
     public String itemList(ModelMap model){
-        List<Item> itemList = itemService.getAllItemsSortedId();
+        List<ItemSummary> itemList = itemService.getCatalog();
         model.addAttribute("itemList",itemList);
         unifiedService.getCartInfo(model);
         return "item-list";
@@ -152,23 +147,129 @@ public class ItemController {
     /**
      * Mapping to the endpoint which lets Admins change the availability status of a specific item by ID
      * @param id - The ID of the item to change status
-     * @return A String which is the updated frontend template
+     * @return A String which is the updated frontend template, telling the Admin how many carts the item was removed from
      */
     @GetMapping(path = "/items/setavailability/{id}")
     public String changeAvailability(@PathVariable Long id){
-        itemService.changeAvailability(id);
+        int removedCarts = itemService.changeAvailability(id);
+        if(removedCarts > 0){
+            return "redirect:/item-list?removedCarts=" + removedCarts;
+        }
         return "redirect:/item-list";
     }
 
     /**
-     * Mapping for endpoint to display an item image from a byte array by ID
+     * Mapping for endpoint to display an item image by ID.
+     * Images never change once uploaded, so they are sent with their content hash as ETag and may be cached for a year.
+     * A request with a matching If-None-Match or If-Modified-Since gets a 304 without reading the image content,
+     * and a request with a single byte Range gets only that part of the image.
+     * A width can be given to get a thumbnail, the smallest one at least as wide is sent.
      * @param imageId - The ID of the image to display
+     * @param width - The width of the thumbnail to send in pixels. The default is to send the original image.
+     * @param request - The current request, used to check its conditional and Range headers
      * @param response - The HTTP response to which the image will be sent
      * @throws IOException
      */
     @GetMapping(value = "/itemimage/{image_id}")
-    public void getImage(@PathVariable("image_id") Long imageId, HttpServletResponse response) throws IOException {
-        InputStream is = new ByteArrayInputStream(itemImageService.getItemImageById(imageId).getImage());
-        IOUtils.copy(is, response.getOutputStream());
+    public void getImage(@PathVariable("image_id") Long imageId,
+                         @RequestParam(name = "w", required = false) Integer width,
+                         ServletWebRequest request, HttpServletResponse response) throws IOException {
+        ItemImage image = itemImageService.getItemImageById(imageId);
+        //An image is never run as a page, even one saved with a type that was not checked
+        response.setHeader("Content-Security-Policy", "sandbox");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        //Images saved in the database are streamed from it whole until they have been moved into the image store
+        if(image.getContentHash() == null){
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            itemImageService.writeDatabaseImage(imageId, response::setContentType, response.getOutputStream());
+            return;
+        }
+        StoredContent content = itemImageService.getImageContent(image, width);
+        if(width != null && content.getKey().equals(image.getContentHash()) && itemImageService.hasThumbnail(width)){
+            //The thumbnail is not ready yet, the original is sent this time but must not be kept for this URL
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }else{
+            response.setHeader(HttpHeaders.CACHE_CONTROL, IMAGE_CACHE_CONTROL);
+        }
+        long lastModified = image.getCreatedAt() == null ? -1 : image.getCreatedAt().toEpochMilli();
+        if(request.checkNotModified(content.getKey(), lastModified)){
+            return;
+        }
+
+        long length = content.getLength();
+        //Images saved before their type was checked are sent as plain bytes unless they are a known raster type
+        response.setContentType(ItemImageService.SAFE_IMAGE_TYPES.contains(content.getContentType())
+                ? content.getContentType() : "application/octet-stream");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        HttpRange range = getRequestedRange(request, content);
+        if(range == null){
+            sendImage(request, response, content, 0, length);
+            return;
+        }
+
+        long start = range.getRangeStart(length);
+        long end = range.getRangeEnd(length);
+        if(start >= length || start > end){
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        sendImage(request, response, content, start, end - start + 1);
+    }
+
+    /**
+     * Method to send an image content, or part of it, as the body of the response.
+     * Large images are sent by Tomcat with sendfile straight from the disk to the socket,
+     * other images are sent with FileChannel.transferTo, so image bytes are never copied into the heap.
+     * @param request - The current request
+     * @param response - The HTTP response to which the image will be sent
+     * @param content - The image content to send
+     * @param start - The position of the first byte to send, starting from 0
+     * @param length - The number of bytes to send
+     * @throws IOException
+     */
+    private void sendImage(ServletWebRequest request, HttpServletResponse response, StoredContent content, long start, long length) throws IOException {
+        response.setContentLengthLong(length);
+        HttpServletRequest servletRequest = request.getRequest();
+        Path file = itemImageService.getContentFile(content);
+        if(file != null && length >= sendfileMinSize && "GET".equals(servletRequest.getMethod())
+                && Boolean.TRUE.equals(servletRequest.getAttribute(SENDFILE_SUPPORT))){
+            servletRequest.setAttribute(SENDFILE_FILENAME, file.toString());
+            servletRequest.setAttribute(SENDFILE_START, start);
+            servletRequest.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        itemImageService.writeContent(content, start, length, response.getOutputStream());
+    }
+
+    /**
+     * Method to get the byte range requested for an image
+     * @param request - The current request
+     * @param content - The image content that is requested
+     * @return The requested range, or null if the whole image should be sent
+     */
+    private HttpRange getRequestedRange(ServletWebRequest request, StoredContent content){
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if(rangeHeader == null){
+            return null;
+        }
+        //A range of an older copy of the image is answered with the whole current image
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if(ifRange != null && !ifRange.equals("\"" + content.getKey() + "\"")){
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        }
+        catch (IllegalArgumentException e) {
+            //An invalid Range header is ignored
+            return null;
+        }
+        //Several ranges at once are rare for images, the whole image is sent instead
+        return ranges.size() == 1 ? ranges.get(0) : null;
     }
 }
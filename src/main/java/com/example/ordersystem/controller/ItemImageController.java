@@ -1,14 +1,17 @@
 package com.example.ordersystem.controller;
 
-import com.example.ordersystem.model.ItemImage;
+import com.example.ordersystem.model.ImageUploadResult;
+import com.example.ordersystem.service.ImageUploadService;
 import com.example.ordersystem.service.ItemImageService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This class is used for routing RESTful endpoints to perform CRUD on item images.
@@ -17,33 +20,38 @@ import java.util.*;
 public class ItemImageController {
     @Autowired
     private ItemImageService itemImageService;
+    @Autowired
+    private ImageUploadService imageUploadService;
 
     /**
-     * Mapping of the endpoint to let Admins upload new images of a specific item by ID
+     * Mapping of the endpoint to let Admins upload new images of a specific item by ID.
+     * The files are copied several at a time, and a file that cannot be saved does not stop the others.
      * @param id - The ID of the item to upload image
-     * @param files - The HashMap which contains String as a key, and multipart files which represent the image(s) to upload
-     * @return A response to the client, whether the upload was successful or not
+     * @param files - The Map which contains String as a key, and multipart files which represent the image(s) to upload
+     * @return A response to the client with the result of each file, OK only if every file was saved,
+     *         or Service Unavailable if the server is too busy to take the files
      */
     @PostMapping("/item/{id}/image")
-    public ResponseEntity<String> handleImagePost(@PathVariable String id, @RequestParam HashMap<String, MultipartFile> files){
-        String message = "";
-        if(files != null){
-            //Get the item's ID and image files from the request
-            // and run a loop to save each image into the database with the item's ID
-            for(String key:files.keySet()){
-                MultipartFile file = files.get(key);
-                try {
-                    itemImageService.saveItemImage(Long.valueOf(id),file);
-                    message += "Uploaded the file successfully: " + file.getOriginalFilename() + "!\n";
-                } catch (Exception e) {
-                    message = "Could not upload the file: " + file.getOriginalFilename() + "!\n"+ Arrays.toString(e.getStackTrace());
-                    return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body(message);
-                }
-            }
-            //Return the status as a response to the client website
-            return ResponseEntity.status(HttpStatus.OK).body(message);
+    public ResponseEntity<ImageUploadResult> handleImagePost(@PathVariable String id, @RequestParam Map<String, MultipartFile> files){
+        //Spring keeps the files in the order they were sent, the first one becomes the item's main image
+        List<MultipartFile> uploads = new ArrayList<>(files.values());
+        if(uploads.isEmpty()){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        if(uploads.size() > imageUploadService.getMaxFiles()){
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        ImageUploadResult result;
+        try {
+            result = imageUploadService.uploadImages(Long.valueOf(id), uploads);
         }
-        return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body("File array is NULL!");
+        catch (RejectedExecutionException e) {
+            //Every upload worker is busy, the client may send the files again a little later
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        //Return the status as a response to the client website
+        HttpStatus status = result.getFailedCount() == 0 ? HttpStatus.OK : HttpStatus.EXPECTATION_FAILED;
+        return ResponseEntity.status(status).body(result);
     }
 
     /**
@@ -52,17 +60,6 @@ public class ItemImageController {
      */
     @DeleteMapping("/item/{id}/image")
     public void deleteItemImage(@PathVariable String id){
-        //Get a list of all item images
-        List<ItemImage> itemImageList = itemImageService.getAllItemImages();
-        //Create iterator to iterate through the image list
-        Iterator<ItemImage> imageIterator = itemImageList.listIterator();
-        while (imageIterator.hasNext()){
-            //Get the next item image
-            ItemImage nextImage = imageIterator.next();
-            //Delete it if its item ID matches the ID of the item to delete
-            if(Objects.equals(nextImage.getItem().getId(), Long.valueOf(id))){
-                itemImageService.deleteItemImage(nextImage);
-            }
-        }
+        itemImageService.deleteItemImages(Long.valueOf(id));
     }
 }
@@ -1,12 +1,29 @@
 package com.example.ordersystem.controller;
 
+import com.example.ordersystem.cache.CatalogVersions;
 import com.example.ordersystem.model.Item;
+import com.example.ordersystem.model.ItemExport;
+import com.example.ordersystem.model.ItemImportResult;
+import com.example.ordersystem.model.ItemImportRow;
+import com.example.ordersystem.model.ItemSummary;
 import com.example.ordersystem.service.ItemService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,14 +34,53 @@ import java.util.Optional;
 public class ItemRestController {
     @Autowired
     private ItemService itemService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private CatalogVersions catalogVersions;
 
     /**
-     * Mapping of the endpoint to get all items in the database
-     * @return A List of all items in the database
+     * Mapping of the endpoint to get the summaries of all items in the database.
+     * The full item with its images can be fetched with /items/{id}.
+     * The response has the ETag of the catalog, a request with a matching If-None-Match gets a 304 without a body.
+     * @param request - The current request, used to check its If-None-Match header
+     * @return A List of the summaries of all items in the database, or null if the client's copy is still current
      */
     @GetMapping(path = "/items")
-    public List<Item> getAllItems(){
-        return itemService.getAllItems();
+    public List<ItemSummary> getAllItems(WebRequest request){
+        //Read the version before the content, so a change made in between is caught by the next request
+        if(request.checkNotModified(catalogVersions.getCatalogETag())){
+            return null;
+        }
+        return itemService.getCatalog();
+    }
+
+    /**
+     * Mapping of the endpoint to export all items as newline-delimited JSON, one item per line.
+     * The items are read from the database in chunks while they are written to the response,
+     * so the whole catalog is never held in memory. Deleted items are not reported.
+     * @param updatedSince - Only export the items changed at or after this ISO-8601 instant, such as 2021-09-01T00:00:00Z.
+     *                     The default is to export all items.
+     * @return A response entity which streams the items
+     */
+    @GetMapping(path = "/items/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportItems(@RequestParam(name = "updatedSince", required = false) Instant updatedSince){
+        StreamingResponseBody body = out -> {
+            //The generator buffers a few kilobytes at a time, it must not close the response stream
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            itemService.exportItems(updatedSince, item -> writeLine(generator, item));
+            generator.flush();
+        };
+        return ResponseEntity.status(HttpStatus.OK).body(body);
+    }
+
+    private void writeLine(JsonGenerator generator, ItemExport item){
+        try {
+            generator.writeObject(item);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -39,6 +95,39 @@ public class ItemRestController {
         return ResponseEntity.status(HttpStatus.OK).body(IDstring);
     }
 
+    /**
+     * Mapping of the endpoint to import many items from a JSON array.
+     * The array is read one element at a time, each element has the same fields as the item form.
+     * @param body - The request body holding the JSON array
+     * @return The ItemImportResult with the number of imported items and the errors of the skipped rows
+     * @throws IOException if the request body cannot be read
+     */
+    @PostMapping(path = "/items/import", consumes = "application/json")
+    public ResponseEntity<ItemImportResult> importItemsJson(InputStream body) throws IOException {
+        try(MappingIterator<ItemImportRow> rows = objectMapper.readerFor(ItemImportRow.class).readValues(body)){
+            return ResponseEntity.status(HttpStatus.OK).body(itemService.importItems(rows));
+        }
+    }
+
+    /**
+     * Mapping of the endpoint to import many items from a CSV file.
+     * The first line is the header naming the columns: itemName, itemDescription, itemImage, itemPrice, category and availability.
+     * The file is read one line at a time.
+     * @param body - The request body holding the CSV file
+     * @return The ItemImportResult with the number of imported items and the errors of the skipped rows
+     * @throws IOException if the request body cannot be read
+     */
+    @PostMapping(path = "/items/import", consumes = "text/csv")
+    public ResponseEntity<ItemImportResult> importItemsCsv(InputStream body) throws IOException {
+        CsvMapper csvMapper = new CsvMapper();
+        csvMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        try(MappingIterator<ItemImportRow> rows = csvMapper.readerFor(ItemImportRow.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(body)){
+            return ResponseEntity.status(HttpStatus.OK).body(itemService.importItems(rows));
+        }
+    }
+
     /**
      * Mapping of the endpoint to update an item in the database
      * @param item - The Item object to be updated
@@ -61,22 +150,32 @@ public class ItemRestController {
     }
 
     /**
-     * Mapping of the endpoint to get an item from the database by ID
+     * Mapping of the endpoint to get an item from the database by ID.
+     * The response has the ETag of the item, a request with a matching If-None-Match gets a 304 without a body.
      * @param id - The ID of the item to get
-     * @return An Optional object which may contain the item to get
+     * @param request - The current request, used to check its If-None-Match header
+     * @return An Optional object which may contain the item to get, or null if the client's copy is still current
      */
     @GetMapping(path = "/items/{id}")
-    public Optional<Item> getItemById(@PathVariable Long id){
+    public Optional<Item> getItemById(@PathVariable Long id, WebRequest request){
+        if(request.checkNotModified(catalogVersions.getItemETag(id))){
+            return null;
+        }
         return itemService.getItem(id);
     }
 
     /**
-     * Mapping of the endpoint to get all image names of an item by ID
+     * Mapping of the endpoint to get all image names of an item by ID.
+     * The response has the ETag of the item, a request with a matching If-None-Match gets a 304 without a body.
      * @param id - The ID of the item whose images will be retrieved
-     * @return A response entity which contains the String of all image names
+     * @param request - The current request, used to check its If-None-Match header
+     * @return A response entity which contains the String of all image names, or null if the client's copy is still current
      */
     @GetMapping(path = "/items/images/{id}")
-    public ResponseEntity<String> getItemImages(@PathVariable Long id){
+    public ResponseEntity<String> getItemImages(@PathVariable Long id, WebRequest request){
+        if(request.checkNotModified(catalogVersions.getItemETag(id))){
+            return null;
+        }
         return ResponseEntity.status(HttpStatus.OK).body(itemService.getItemImages(id));
     }
 
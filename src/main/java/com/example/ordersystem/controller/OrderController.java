@@ -107,16 +107,8 @@ public class OrderController {
         Account loggedInAcc = (Account)auth.getPrincipal();
         Long userId = loggedInAcc.getId();
         Account user = accountService.getAccountById(userId);
-        //Create a new order for that user
+        //Create a new order for that user, which also empties their cart
         orderService.addOrder(user);
-        //Get the list of all carts belonging to that user
-        List<Cart> cartList = cartService.getAllCarts(user);
-        //Create an iterator to iterate through the cart list
-        Iterator<Cart> cartIterator = cartList.listIterator();
-        while (cartIterator.hasNext()){
-            //Empty the cart list after the user checked out by deleting the carts
-            cartService.deleteCart(cartIterator.next().getId());
-        }
         return "redirect:/shopping-cart";
     }
     
@@ -0,0 +1,28 @@
+package com.example.ordersystem.index;
+
+/**
+ * This class describes one category of the shop with its number of items and available items
+ */
+public class CategoryFacet {
+    private final String category;
+    private final int itemCount;
+    private final int availableCount;
+
+    public CategoryFacet(String category, int itemCount, int availableCount){
+        this.category = category;
+        this.itemCount = itemCount;
+        this.availableCount = availableCount;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getAvailableCount() {
+        return availableCount;
+    }
+}
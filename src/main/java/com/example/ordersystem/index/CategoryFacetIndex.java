@@ -0,0 +1,154 @@
+package com.example.ordersystem.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * This class is the in-memory index of shop categories with their item and availability counts.
+ * It is built once from the database, then kept up to date item by item,
+ * so listing the categories and counting their items never needs to read the items table.
+ */
+@Component
+public class CategoryFacetIndex {
+    //The last known state of each item, so an update only moves that item's contribution
+    private final Map<Long, ItemFacet> itemsById = new HashMap<>();
+    private final Map<String, Facet> facets = new HashMap<>();
+
+    private boolean loaded = false;
+    //Counts the incremental updates, so a load that overlapped an update can be detected and discarded
+    private long modCount = 0;
+
+    private static class Facet {
+        private final TreeSet<Long> itemIds = new TreeSet<>();
+        private int availableCount = 0;
+    }
+
+    /**
+     * Method to check whether the index has been built from the database yet
+     * @return True if the index can be used
+     */
+    public synchronized boolean isLoaded(){
+        return loaded;
+    }
+
+    /**
+     * Method to get the number of updates applied so far, to be passed to load
+     * @return The current modification count
+     */
+    public synchronized long getModCount(){
+        return modCount;
+    }
+
+    /**
+     * Method to replace the content of the index with the items read from the database
+     * @param items - All items in the database
+     * @param expectedModCount - The modification count read before the items were queried
+     * @return True if the index was loaded, false if an update happened during the query and it must be retried
+     */
+    public synchronized boolean load(Collection<ItemFacet> items, long expectedModCount){
+        if(modCount != expectedModCount){
+            return false;
+        }
+        itemsById.clear();
+        facets.clear();
+        for(ItemFacet item: items){
+            add(item);
+        }
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * Method to add a new item to the index, or move an existing item to its new category and availability
+     * @param item - The current state of the item
+     */
+    public synchronized void put(ItemFacet item){
+        modCount++;
+        removeById(item.getId());
+        add(item);
+    }
+
+    /**
+     * Method to remove a deleted item from the index
+     * @param id - The ID of the deleted item
+     */
+    public synchronized void remove(Long id){
+        modCount++;
+        removeById(id);
+    }
+
+    /**
+     * Method to get every category with its counts, in the order the categories first appeared in the shop
+     * @return The List of all category facets
+     */
+    public synchronized List<CategoryFacet> getFacets(){
+        List<Map.Entry<String, Facet>> entries = new ArrayList<>(facets.entrySet());
+        entries.sort(Comparator.comparing(entry -> entry.getValue().itemIds.first()));
+        List<CategoryFacet> result = new ArrayList<>(entries.size());
+        for(Map.Entry<String, Facet> entry: entries){
+            Facet facet = entry.getValue();
+            result.add(new CategoryFacet(entry.getKey(), facet.itemIds.size(), facet.availableCount));
+        }
+        return result;
+    }
+
+    /**
+     * Method to get the number of items in a category
+     * @param category - The category to count
+     * @return The number of items in that category
+     */
+    public synchronized int countItems(String category){
+        Facet facet = facets.get(category);
+        return facet == null ? 0 : facet.itemIds.size();
+    }
+
+    /**
+     * Method to get the number of available items in a category
+     * @param category - The category to count
+     * @return The number of available items in that category
+     */
+    public synchronized int countAvailable(String category){
+        Facet facet = facets.get(category);
+        return facet == null ? 0 : facet.availableCount;
+    }
+
+    /**
+     * Method to get the number of items in the whole shop
+     * @return The number of items in the index
+     */
+    public synchronized int countAllItems(){
+        return itemsById.size();
+    }
+
+    private void add(ItemFacet item){
+        itemsById.put(item.getId(), item);
+        Facet facet = facets.computeIfAbsent(item.getCategory(), category -> new Facet());
+        facet.itemIds.add(item.getId());
+        if(item.isAvailable()){
+            facet.availableCount++;
+        }
+    }
+
+    private void removeById(Long id){
+        ItemFacet old = itemsById.remove(id);
+        if(old == null){
+            return;
+        }
+        Facet facet = facets.get(old.getCategory());
+        facet.itemIds.remove(id);
+        if(old.isAvailable()){
+            facet.availableCount--;
+        }
+        //Drop the category once its last item is gone
+        if(facet.itemIds.isEmpty()){
+            facets.remove(old.getCategory());
+        }
+    }
+}
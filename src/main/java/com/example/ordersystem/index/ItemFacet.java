@@ -0,0 +1,29 @@
+package com.example.ordersystem.index;
+
+/**
+ * This class is the light row used to build the category facet index,
+ * it holds only the fields of an Item the index needs
+ */
+public class ItemFacet {
+    private final Long id;
+    private final String category;
+    private final boolean available;
+
+    public ItemFacet(Long id, String category, boolean available){
+        this.id = id;
+        this.category = category;
+        this.available = available;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+}
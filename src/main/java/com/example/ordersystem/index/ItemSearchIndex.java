@@ -0,0 +1,287 @@
+package com.example.ordersystem.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is the in-memory trigram index used to search the shop items by keyword.
+ * Every indexed field is split into overlapping three-letter grams, and each gram points to the items containing it,
+ * so a search only looks at the items sharing the grams of its term instead of scanning the whole catalog.
+ * Like the category index, it is built once from the database and then kept up to date item by item.
+ */
+@Component
+public class ItemSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    //Marks the start and end of a field, so prefixes get their own grams and short names are still indexed
+    private static final char BOUNDARY = '\u0001';
+
+    //Scores of the different kinds of match, the best match of an item decides its rank
+    private static final int EXACT_NAME_SCORE = 100;
+    private static final int NAME_PREFIX_SCORE = 80;
+    private static final int NAME_WORD_PREFIX_SCORE = 60;
+    private static final int NAME_SUBSTRING_SCORE = 40;
+    private static final int CATEGORY_SCORE = 20;
+    private static final int DESCRIPTION_SCORE = 10;
+
+    private final boolean indexCategory;
+    private final boolean indexDescription;
+
+    private final Map<Long, Entry> entriesById = new HashMap<>();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+
+    private boolean loaded = false;
+    //Counts the incremental updates, so a load that overlapped an update can be detected and discarded
+    private long modCount = 0;
+
+    /**
+     * The indexed state of an item, with its text already in lower case
+     */
+    private static class Entry {
+        private final Long id;
+        private final String category;
+        private final String name;
+        private final String categoryText;
+        private final String description;
+
+        private Entry(SearchDocument document){
+            this.id = document.getId();
+            this.category = document.getCategory();
+            this.name = normalize(document.getItemName());
+            this.categoryText = normalize(document.getCategory());
+            this.description = normalize(document.getItemDescription());
+        }
+    }
+
+    /**
+     * The rank of an item matching a search term
+     */
+    private static class Match {
+        private final Entry entry;
+        private final int score;
+
+        private Match(Entry entry, int score){
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    public ItemSearchIndex(@Value("${app.search-index.include-category:false}") boolean indexCategory,
+                           @Value("${app.search-index.include-description:false}") boolean indexDescription){
+        this.indexCategory = indexCategory;
+        this.indexDescription = indexDescription;
+    }
+
+    /**
+     * Method to check whether the index has been built from the database yet
+     * @return True if the index can be used
+     */
+    public synchronized boolean isLoaded(){
+        return loaded;
+    }
+
+    /**
+     * Method to get the number of updates applied so far, to be passed to load
+     * @return The current modification count
+     */
+    public synchronized long getModCount(){
+        return modCount;
+    }
+
+    /**
+     * Method to replace the content of the index with the items read from the database
+     * @param documents - All items in the database
+     * @param expectedModCount - The modification count read before the items were queried
+     * @return True if the index was loaded, false if an update happened during the query and it must be retried
+     */
+    public synchronized boolean load(Collection<SearchDocument> documents, long expectedModCount){
+        if(modCount != expectedModCount){
+            return false;
+        }
+        entriesById.clear();
+        postings.clear();
+        for(SearchDocument document: documents){
+            add(new Entry(document));
+        }
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * Method to add a new item to the index, or replace the indexed text of an existing item
+     * @param document - The current state of the item
+     */
+    public synchronized void put(SearchDocument document){
+        modCount++;
+        removeById(document.getId());
+        add(new Entry(document));
+    }
+
+    /**
+     * Method to remove a deleted item from the index
+     * @param id - The ID of the deleted item
+     */
+    public synchronized void remove(Long id){
+        modCount++;
+        removeById(id);
+    }
+
+    /**
+     * Method to find the items whose indexed text contains a search term, ignoring case.
+     * Items are ranked by how well they match: the exact name first, then names starting with the term,
+     * then names with a word starting with the term, then any other name, category and description matches.
+     * Items with the same rank are ordered by the length of their name, then by their ID.
+     * @param term - The search term
+     * @param category - The category the items must be in, or null for every category
+     * @return The List of the matching item IDs, best match first
+     */
+    public synchronized List<Long> search(String term, String category){
+        String query = normalize(term);
+        if(query.isEmpty()){
+            return new ArrayList<>();
+        }
+        List<Match> matches = new ArrayList<>();
+        for(Long id: findCandidates(query)){
+            Entry entry = entriesById.get(id);
+            if(category != null && !category.equals(entry.category)){
+                continue;
+            }
+            //The grams only narrow the candidates down, the score checks the term really is in the text
+            int score = score(entry, query);
+            if(score > 0){
+                matches.add(new Match(entry, score));
+            }
+        }
+        matches.sort(Comparator.comparingInt((Match match) -> -match.score)
+                .thenComparingInt(match -> match.entry.name.length())
+                .thenComparing(match -> match.entry.id));
+
+        List<Long> result = new ArrayList<>(matches.size());
+        for(Match match: matches){
+            result.add(match.entry.id);
+        }
+        return result;
+    }
+
+    /**
+     * Method to get the number of items in the index
+     * @return The number of indexed items
+     */
+    public synchronized int size(){
+        return entriesById.size();
+    }
+
+    private Set<Long> findCandidates(String query){
+        Set<Long> candidates = new HashSet<>();
+        if(query.length() < GRAM_LENGTH){
+            //A short term is part of every gram containing it, the number of distinct grams does not grow with the catalog
+            for(Map.Entry<String, Set<Long>> posting: postings.entrySet()){
+                if(posting.getKey().contains(query)){
+                    candidates.addAll(posting.getValue());
+                }
+            }
+            return candidates;
+        }
+
+        //A longer term needs every one of its grams, start from the rarest one and intersect the others
+        List<Set<Long>> lists = new ArrayList<>();
+        for(String gram: grams(query, false)){
+            Set<Long> ids = postings.get(gram);
+            if(ids == null){
+                return candidates;
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        candidates.addAll(lists.get(0));
+        for(int i = 1; i < lists.size() && !candidates.isEmpty(); i++){
+            candidates.retainAll(lists.get(i));
+        }
+        return candidates;
+    }
+
+    private int score(Entry entry, String query){
+        if(entry.name.equals(query)){
+            return EXACT_NAME_SCORE;
+        }
+        if(entry.name.startsWith(query)){
+            return NAME_PREFIX_SCORE;
+        }
+        int index = entry.name.indexOf(query);
+        if(index >= 0){
+            //Look for an occurrence at the start of a word, such as "dog" in "Hot dog"
+            while(index >= 0){
+                if(!Character.isLetterOrDigit(entry.name.charAt(index - 1))){
+                    return NAME_WORD_PREFIX_SCORE;
+                }
+                index = entry.name.indexOf(query, index + 1);
+            }
+            return NAME_SUBSTRING_SCORE;
+        }
+        if(indexCategory && entry.categoryText.contains(query)){
+            return CATEGORY_SCORE;
+        }
+        if(indexDescription && entry.description.contains(query)){
+            return DESCRIPTION_SCORE;
+        }
+        return 0;
+    }
+
+    private void add(Entry entry){
+        entriesById.put(entry.id, entry);
+        for(String gram: entryGrams(entry)){
+            postings.computeIfAbsent(gram, key -> new HashSet<>()).add(entry.id);
+        }
+    }
+
+    private void removeById(Long id){
+        Entry old = entriesById.remove(id);
+        if(old == null){
+            return;
+        }
+        for(String gram: entryGrams(old)){
+            Set<Long> ids = postings.get(gram);
+            ids.remove(id);
+            //Drop the gram once no item contains it
+            if(ids.isEmpty()){
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private Set<String> entryGrams(Entry entry){
+        Set<String> grams = new HashSet<>(grams(entry.name, true));
+        if(indexCategory){
+            grams.addAll(grams(entry.categoryText, true));
+        }
+        if(indexDescription){
+            grams.addAll(grams(entry.description, true));
+        }
+        return grams;
+    }
+
+    private static List<String> grams(String text, boolean withBoundaries){
+        String padded = withBoundaries ? BOUNDARY + text + BOUNDARY : text;
+        List<String> grams = new ArrayList<>();
+        for(int i = 0; i + GRAM_LENGTH <= padded.length(); i++){
+            grams.add(padded.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text){
+        if(text == null){
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replace(String.valueOf(BOUNDARY), "");
+    }
+}
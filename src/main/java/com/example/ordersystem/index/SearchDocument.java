@@ -0,0 +1,35 @@
+package com.example.ordersystem.index;
+
+/**
+ * This class is the light row used to build the item search index,
+ * it holds only the text fields of an Item the index can search
+ */
+public class SearchDocument {
+    private final Long id;
+    private final String itemName;
+    private final String category;
+    private final String itemDescription;
+
+    public SearchDocument(Long id, String itemName, String category, String itemDescription){
+        this.id = id;
+        this.itemName = itemName;
+        this.category = category;
+        this.itemDescription = itemDescription;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getItemDescription() {
+        return itemDescription;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.ordersystem.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This class merges the carts saved twice for the same item and account before the cart table had its unique key,
+ * then adds the key, which adding an item to a cart relies on.
+ * Hibernate adds the key itself to a new database, or to one without duplicate carts, so this migration is only needed
+ * once, on a database that has duplicates. It is off by default and runs once the application has started when enabled.
+ */
+@Component
+public class DuplicateCartMigration {
+    private static final Logger log = LoggerFactory.getLogger(DuplicateCartMigration.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Value("${app.migrate.duplicate-carts:false}")
+    private boolean migrateOnStartup;
+
+    /**
+     * Method to merge the duplicate carts when the application starts, if the migration is enabled.
+     * The listener is called through the proxy, so the whole migration runs in its transaction.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void onApplicationReady(){
+        if(migrateOnStartup){
+            migrate();
+        }
+    }
+
+    /**
+     * Method to merge the carts saved twice for the same item and account, then add the unique key of the cart table.
+     * It does nothing once the key exists.
+     * @return The number of carts that have been merged into another one
+     */
+    @Transactional
+    public int migrate(){
+        Integer keys = jdbcTemplate.queryForObject("select count(*) from pg_indexes " +
+                "where tablename = 'cart' and indexname = 'cart_account_item_key'", Integer.class);
+        if(keys != null && keys > 0){
+            return 0;
+        }
+        //Keep the oldest cart of each item and account with the sum of their amounts
+        jdbcTemplate.update("UPDATE cart SET amount = d.total FROM (SELECT min(id) AS id, sum(amount) AS total " +
+                "FROM cart GROUP BY account_id, item_id HAVING count(*) > 1) d WHERE cart.id = d.id");
+        int merged = jdbcTemplate.update("DELETE FROM cart c USING cart k " +
+                "WHERE c.account_id = k.account_id AND c.item_id = k.item_id AND c.id > k.id");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS cart_account_item_key ON cart (account_id, item_id)");
+        if(merged > 0){
+            log.info("Merged {} duplicate carts", merged);
+        }
+        return merged;
+    }
+}
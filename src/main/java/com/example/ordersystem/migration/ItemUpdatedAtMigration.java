@@ -0,0 +1,60 @@
+package com.example.ordersystem.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This class gives a change time to the items saved before the items table had one, then makes the column required.
+ * Without a time those items would never be part of an export of the items changed since a partner's last sync.
+ * Hibernate makes the column required itself in a new database, but does not change a column that exists already,
+ * so this migration runs once the application has started and does nothing once the column is required.
+ */
+@Component
+public class ItemUpdatedAtMigration {
+    private static final Logger log = LoggerFactory.getLogger(ItemUpdatedAtMigration.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Value("${app.migrate.item-updated-at:true}")
+    private boolean migrateOnStartup;
+
+    /**
+     * Method to fill in the missing change times when the application starts, if the migration is enabled.
+     * The listener is called through the proxy, so the whole migration runs in its transaction.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void onApplicationReady(){
+        if(migrateOnStartup){
+            migrate();
+        }
+    }
+
+    /**
+     * Method to set the change time of the items which have none to now, then make the column required.
+     * It does nothing once the column is required.
+     * @return The number of items that have been given a change time
+     */
+    @Transactional
+    public int migrate(){
+        Integer nullable = jdbcTemplate.queryForObject("select count(*) from information_schema.columns " +
+                "where table_name = 'items' and column_name = 'updatedat' and is_nullable = 'YES'", Integer.class);
+        if(nullable == null || nullable == 0){
+            return 0;
+        }
+        //Every item without a time counts as changed now, so the next delta export sends it once
+        int updated = jdbcTemplate.update("UPDATE items SET updatedAt = now() WHERE updatedAt IS NULL");
+        jdbcTemplate.execute("ALTER TABLE items ALTER COLUMN updatedAt SET NOT NULL");
+        if(updated > 0){
+            log.info("Set the change time of {} items", updated);
+        }
+        return updated;
+    }
+}
@@ -9,7 +9,8 @@ import javax.persistence.*;
  */
 
 @Entity
-@Table(name = "cart")
+//One cart per item and account, so adding an item twice at once cannot create two carts
+@Table(name = "cart", uniqueConstraints = @UniqueConstraint(name = "cart_account_item_key", columnNames = {"account_id", "item_id"}))
 public class Cart {
 
     @Id
@@ -0,0 +1,48 @@
+package com.example.ordersystem.model;
+
+/**
+ * This class is one change to an account's cart, read from the JSON array sent to the cart operations endpoint.
+ * The type is "add" to add an amount of an item, "set" to set the amount of an item, or "remove" to take an item out.
+ */
+public class CartOperation {
+    public static final String ADD = "add";
+    public static final String SET = "set";
+    public static final String REMOVE = "remove";
+
+    private String type;
+    private Long itemId;
+    // Not used by "remove"
+    private int amount;
+
+    public CartOperation() {}
+
+    public CartOperation(String type, Long itemId, int amount) {
+        this.type = type;
+        this.itemId = itemId;
+        this.amount = amount;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public void setAmount(int amount) {
+        this.amount = amount;
+    }
+}
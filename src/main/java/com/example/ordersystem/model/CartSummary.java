@@ -0,0 +1,109 @@
+package com.example.ordersystem.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is the read-only summary of an account's cart shown on the cart icon of every page.
+ * It keeps the amount and price of each item in the cart, so a change to one item updates it without reading the cart again.
+ */
+public class CartSummary {
+    public static final CartSummary EMPTY = new CartSummary(Collections.emptyMap());
+
+    private final Map<Long, Line> lines;
+    private final BigDecimal total;
+
+    /**
+     * The amount and current price of one item in the cart
+     */
+    public static class Line {
+        private final BigDecimal price;
+        private final int amount;
+
+        public Line(BigDecimal price, int amount) {
+            this.price = price;
+            this.amount = amount;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+    }
+
+    public CartSummary(Map<Long, Line> lines) {
+        this.lines = Collections.unmodifiableMap(lines);
+        BigDecimal sum = BigDecimal.ZERO;
+        for(Line line: lines.values()){
+            sum = sum.add(line.getPrice().multiply(BigDecimal.valueOf(line.getAmount())));
+        }
+        this.total = sum.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Method to get a copy of this summary with the amount and price of an item
+     * @param itemId - The ID of the item
+     * @param price - The current price of the item
+     * @param amount - The new amount of the item in the cart, the item is removed if it is not positive
+     * @return The new CartSummary
+     */
+    public CartSummary withLine(Long itemId, BigDecimal price, int amount) {
+        if(amount <= 0){
+            return withoutItem(itemId);
+        }
+        Map<Long, Line> changed = new HashMap<>(lines);
+        changed.put(itemId, new Line(price, amount));
+        return new CartSummary(changed);
+    }
+
+    /**
+     * Method to get a copy of this summary with the new price of an item
+     * @param itemId - The ID of the item
+     * @param price - The new price of the item
+     * @return The new CartSummary, or this one if the item is not in the cart
+     */
+    public CartSummary withPrice(Long itemId, BigDecimal price) {
+        Line line = lines.get(itemId);
+        return line == null ? this : withLine(itemId, price, line.getAmount());
+    }
+
+    /**
+     * Method to get a copy of this summary without an item
+     * @param itemId - The ID of the item
+     * @return The new CartSummary, or this one if the item is not in the cart
+     */
+    public CartSummary withoutItem(Long itemId) {
+        if(!lines.containsKey(itemId)){
+            return this;
+        }
+        Map<Long, Line> changed = new HashMap<>(lines);
+        changed.remove(itemId);
+        return new CartSummary(changed);
+    }
+
+    public Map<Long, Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * Method to get the number of different items in the cart
+     * @return The number of items
+     */
+    public int getQuantity() {
+        return lines.size();
+    }
+
+    /**
+     * Method to get the price of the whole cart
+     * @return The sum of the price of each item multiplied by its amount, with 2 decimals
+     */
+    public BigDecimal getTotal() {
+        return total;
+    }
+}
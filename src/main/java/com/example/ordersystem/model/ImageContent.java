@@ -0,0 +1,31 @@
+package com.example.ordersystem.model;
+
+import javax.persistence.*;
+
+/**
+ * This class counts the item images using each content of the image store.
+ * A content is deleted from the store only once its count drops to 0,
+ * and the row of a content is locked while it is counted, so a content is never deleted while it is being added again.
+ */
+@Entity
+@Table(name="imagecontents")
+public class ImageContent {
+    //SHA-256 of the content in hex
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    //Number of item images using the content
+    @Column
+    private long refCount;
+
+    public ImageContent(){}
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+}
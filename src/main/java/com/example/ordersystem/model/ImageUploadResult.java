@@ -0,0 +1,84 @@
+package com.example.ordersystem.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is the report of an image upload, with the result of each uploaded file in the order they were sent
+ */
+public class ImageUploadResult {
+    private int uploadedCount;
+    private int failedCount;
+    private final List<FileResult> files = new ArrayList<>();
+
+    /**
+     * The result of a single uploaded file
+     */
+    public static class FileResult {
+        private final String fileName;
+        // ID of the saved item image, null if the file was not saved
+        private final Long imageId;
+        // Size in bytes of the uploaded file
+        private final long originalSize;
+        // Size in bytes of the saved image once optimized, 0 if the file was not saved
+        private final long size;
+        private final String contentType;
+        // Reason the file was not saved, null if it was saved
+        private final String error;
+
+        public FileResult(String fileName, Long imageId, long originalSize, long size, String contentType, String error) {
+            this.fileName = fileName;
+            this.imageId = imageId;
+            this.originalSize = originalSize;
+            this.size = size;
+            this.contentType = contentType;
+            this.error = error;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public Long getImageId() {
+            return imageId;
+        }
+
+        public long getOriginalSize() {
+            return originalSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    public void addUploaded(String fileName, Long imageId, long originalSize, long size, String contentType) {
+        files.add(new FileResult(fileName, imageId, originalSize, size, contentType, null));
+        uploadedCount++;
+    }
+
+    public void addFailed(String fileName, long originalSize, String error) {
+        files.add(new FileResult(fileName, null, originalSize, 0, null, error));
+        failedCount++;
+    }
+
+    public int getUploadedCount() {
+        return uploadedCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public List<FileResult> getFiles() {
+        return files;
+    }
+}
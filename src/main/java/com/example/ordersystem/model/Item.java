@@ -1,16 +1,20 @@
 package com.example.ordersystem.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Set;
 
 /**
  * This class is used for creating Item objects that will be displayed and purchasable in the shop
  */
 @Entity
-@Table(name="items")
+@Table(name="items", indexes = @Index(columnList = "updatedAt"))
 public class Item {
     @Id
     @Column
@@ -35,14 +39,24 @@ public class Item {
     @Column
     private boolean availability;
 
-    @JsonManagedReference(value = "cart-item")
-    @OneToMany(fetch = FetchType.EAGER, mappedBy = "item",cascade = CascadeType.REMOVE)
+    //The carts and images are only loaded when they are used, listings show the first image ID instead.
+    //The carts of every account are never sent with the item
+    @JsonIgnore
+    @OneToMany(fetch = FetchType.LAZY, mappedBy = "item",cascade = CascadeType.REMOVE)
     private Set<Cart> carts;
 
     @JsonManagedReference(value = "image-item")
-    @OneToMany(fetch = FetchType.EAGER, mappedBy = "item",cascade = CascadeType.REMOVE)
+    @OneToMany(fetch = FetchType.LAZY, mappedBy = "item",cascade = CascadeType.REMOVE)
     private Set<ItemImage> itemimages;
 
+    @Formula("(select min(i.id) from itemimages i where i.item_id = id)")
+    private Long firstImageId;
+
+    //Time of the last change to the item, used to export only the items changed since a partner's last sync
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private Instant updatedAt;
+
     public Item(){}
 
     public Item(String itemName, String itemDescription, String itemImage, BigDecimal itemPrice, String category, boolean availability){
@@ -126,4 +140,12 @@ public class Item {
     public void setItemimages(Set<ItemImage> itemimages) {
         this.itemimages = itemimages;
     }
+
+    public Long getFirstImageId() {
+        return firstImageId;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
 }
@@ -0,0 +1,65 @@
+package com.example.ordersystem.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * This class is the read-only view of an Item written by the catalog export, one per line.
+ * It holds the item columns without its carts or image contents, so exported items never stay in memory.
+ */
+public class ItemExport {
+    private final Long id;
+    private final String itemName;
+    private final String itemDescription;
+    private final BigDecimal itemPrice;
+    private final String category;
+    private final boolean availability;
+    // ID of the item's first image, null if the item has no image
+    private final Long firstImageId;
+    // Time of the last change to the item, null if it has not changed since the time was first recorded
+    private final Instant updatedAt;
+
+    public ItemExport(Long id, String itemName, String itemDescription, BigDecimal itemPrice, String category,
+                      boolean availability, Long firstImageId, Instant updatedAt) {
+        this.id = id;
+        this.itemName = itemName;
+        this.itemDescription = itemDescription;
+        this.itemPrice = itemPrice;
+        this.category = category;
+        this.availability = availability;
+        this.firstImageId = firstImageId;
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public String getItemDescription() {
+        return itemDescription;
+    }
+
+    public BigDecimal getItemPrice() {
+        return itemPrice;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean isAvailability() {
+        return availability;
+    }
+
+    public Long getFirstImageId() {
+        return firstImageId;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -1,29 +1,54 @@
 package com.example.ordersystem.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import org.hibernate.annotations.CreationTimestamp;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 /**
- * This class is used for storing images of Items
+ * This class is used for storing images of Items, their content is kept in the ImageStore under its hash
  * They are linked to the Item table by ID and will be removed if the item they are linked to gets removed.
  */
 @Entity
-@Table(name="itemimages")
+@Table(name="itemimages", indexes = @Index(columnList = "item_id"))
 public class ItemImage {
     @Id
     @Column
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonBackReference(value = "image-item")
     @JoinColumn(name = "item_id")
     private Item item;
 
-    @Lob
+    //SHA-256 of the image content in hex, the key of the content in the image store and the ETag of the image
+    @Column(length = 64)
+    private String contentHash;
+
+    //MIME type detected from the first bytes of the image
+    @Column
+    private String contentType;
+
+    //Size of the image content in bytes
+    @Column
+    private Long contentLength;
+
+    //Size in bytes of the file the admin uploaded, larger than contentLength if the image was optimized when saved
+    @Column
+    private Long originalLength;
+
+    //Size of the image in pixels, read from its header when it is saved. Null if javax.imageio cannot read it
+    @Column
+    private Integer width;
+
     @Column
-    private byte[] image;
+    private Integer height;
+
+    @CreationTimestamp
+    @Column
+    private Instant createdAt;
 
     public ItemImage(){}
 
@@ -43,11 +68,59 @@ public class ItemImage {
         this.item = item;
     }
 
-    public byte[] getImage() {
-        return image;
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public Long getOriginalLength() {
+        return originalLength;
+    }
+
+    public void setOriginalLength(Long originalLength) {
+        this.originalLength = originalLength;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
     }
 
-    public void setImage(byte[] image) {
-        this.image = image;
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
     }
 }
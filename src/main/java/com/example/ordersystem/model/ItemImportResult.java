@@ -0,0 +1,50 @@
+package com.example.ordersystem.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is the report of a bulk item import, with the number of imported items and the errors of the skipped rows
+ */
+public class ItemImportResult {
+    private int importedCount;
+    private final List<RowError> errors = new ArrayList<>();
+
+    /**
+     * The reason a row was not imported
+     */
+    public static class RowError {
+        // Number of the row in the import, starting from 1 and not counting the CSV header
+        private final int row;
+        private final String message;
+
+        public RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public void addImported(int count) {
+        this.importedCount += count;
+    }
+
+    public void addError(int row, String message) {
+        errors.add(new RowError(row, message));
+    }
+
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+}
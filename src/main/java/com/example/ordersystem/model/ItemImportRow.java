@@ -0,0 +1,65 @@
+package com.example.ordersystem.model;
+
+/**
+ * This class is one row of a bulk item import, read from a JSON array element or a CSV line.
+ * Every field is kept as text, so a badly formatted value is reported for its row instead of stopping the import.
+ */
+public class ItemImportRow {
+    private String itemName;
+    private String itemDescription;
+    private String itemImage;
+    private String itemPrice;
+    private String category;
+    // "true" or "false", an empty value makes the item available
+    private String availability;
+
+    public ItemImportRow() {}
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public void setItemName(String itemName) {
+        this.itemName = itemName;
+    }
+
+    public String getItemDescription() {
+        return itemDescription;
+    }
+
+    public void setItemDescription(String itemDescription) {
+        this.itemDescription = itemDescription;
+    }
+
+    public String getItemImage() {
+        return itemImage;
+    }
+
+    public void setItemImage(String itemImage) {
+        this.itemImage = itemImage;
+    }
+
+    public String getItemPrice() {
+        return itemPrice;
+    }
+
+    public void setItemPrice(String itemPrice) {
+        this.itemPrice = itemPrice;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getAvailability() {
+        return availability;
+    }
+
+    public void setAvailability(String availability) {
+        this.availability = availability;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.ordersystem.model;
+
+import java.util.List;
+
+/**
+ * This class holds one page of items on the Shop page with the cursors to its neighbouring pages
+ */
+public class ItemPage {
+    private final List<ItemSummary> items;
+    // Cursor to the next page, null if this is the last page
+    private final String nextCursor;
+    // Cursor to the previous page, null if this is the first page
+    private final String prevCursor;
+    // Number of items matching the filter and search on all pages, -1 if they were not counted
+    private final int totalItems;
+    // Number of this page, starting from 1, or 0 if it is not known
+    private final int page;
+
+    public ItemPage(List<ItemSummary> items, String nextCursor, String prevCursor) {
+        this(items, nextCursor, prevCursor, -1, 0);
+    }
+
+    public ItemPage(List<ItemSummary> items, String nextCursor, String prevCursor, int totalItems, int page) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+        this.totalItems = totalItems;
+        this.page = page;
+    }
+
+    /**
+     * Method to get a copy of this page with its total number of items and page number
+     * @param totalItems - The number of items matching the filter and search on all pages
+     * @param page - The number of this page, starting from 1
+     * @return The new ItemPage
+     */
+    public ItemPage withTotal(int totalItems, int page) {
+        return new ItemPage(items, nextCursor, prevCursor, totalItems, page);
+    }
+
+    public List<ItemSummary> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public int getPage() {
+        return page;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.ordersystem.model;
+
+import java.math.BigDecimal;
+
+/**
+ * This class is the light read-only view of an Item used to list items on the Shop page, the item list and the REST API.
+ * It holds only the columns those listings show, so listing items never loads their carts or image contents.
+ */
+public class ItemSummary {
+    private final Long id;
+    private final String itemName;
+    private final BigDecimal itemPrice;
+    private final String category;
+    private final boolean availability;
+    // ID of the item's first image, null if the item has no image
+    private final Long firstImageId;
+
+    public ItemSummary(Long id, String itemName, BigDecimal itemPrice, String category, boolean availability, Long firstImageId) {
+        this.id = id;
+        this.itemName = itemName;
+        this.itemPrice = itemPrice;
+        this.category = category;
+        this.availability = availability;
+        this.firstImageId = firstImageId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public BigDecimal getItemPrice() {
+        return itemPrice;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean isAvailability() {
+        return availability;
+    }
+
+    public Long getFirstImageId() {
+        return firstImageId;
+    }
+}
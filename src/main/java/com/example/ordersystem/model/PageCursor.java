@@ -0,0 +1,125 @@
+package com.example.ordersystem.model;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * This class is the opaque cursor used for keyset pagination on the Shop page.
+ * It remembers the sort field and the (sort key, ID) pair of the item at the edge of a page,
+ * so the next or previous page can be queried from that position instead of counting rows from the start.
+ */
+public class PageCursor {
+    private static final String VERSION = "1";
+
+    private final String sortField;
+    // True to get the page after the item, false to get the page before it
+    private final boolean forward;
+    private final Long id;
+    private final String key;
+
+    public PageCursor(String sortField, boolean forward, Long id, String key) {
+        this.sortField = sortField;
+        this.forward = forward;
+        this.id = id;
+        this.key = key;
+    }
+
+    /**
+     * Method to create a cursor pointing to the page after an item
+     * @param sortField - The sort field of the current listing
+     * @param item - The last item of the current page
+     * @return The new PageCursor
+     */
+    public static PageCursor after(String sortField, ItemSummary item){
+        return new PageCursor(sortField, true, item.getId(), getSortKey(sortField, item));
+    }
+
+    /**
+     * Method to create a cursor pointing to the page before an item
+     * @param sortField - The sort field of the current listing
+     * @param item - The first item of the current page
+     * @return The new PageCursor
+     */
+    public static PageCursor before(String sortField, ItemSummary item){
+        return new PageCursor(sortField, false, item.getId(), getSortKey(sortField, item));
+    }
+
+    private static String getSortKey(String sortField, ItemSummary item){
+        switch (sortField) {
+            case "name":
+                return item.getItemName();
+            case "priceHTL":
+            case "priceLTH":
+                return item.getItemPrice().toPlainString();
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Method to turn the cursor into a URL-safe String
+     * @return The encoded cursor
+     */
+    public String encode(){
+        String raw = VERSION + "|" + sortField + "|" + (forward ? "a" : "b") + "|" + id + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Method to read a cursor produced by encode
+     * @param cursor - The encoded cursor
+     * @return The PageCursor, or null if the String is empty or not a valid cursor
+     */
+    public static PageCursor decode(String cursor){
+        if(cursor == null || cursor.isEmpty()){
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // The key comes last because item names may contain the separator
+            String[] parts = raw.split("[|]", 5);
+            if(parts.length != 5 || !parts[0].equals(VERSION) || !(parts[2].equals("a") || parts[2].equals("b"))){
+                return null;
+            }
+            PageCursor pageCursor = new PageCursor(parts[1], parts[2].equals("a"), Long.valueOf(parts[3]), parts[4]);
+            // Make sure a price key is a number before it is used in a query
+            pageCursor.getKeyValue();
+            return pageCursor;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method to get the sort key with the type of the field it is compared to
+     * @return A String for the name sort, a BigDecimal for the price sorts, or null for the ID sort
+     */
+    public Object getKeyValue(){
+        switch (sortField) {
+            case "name":
+                return key;
+            case "priceHTL":
+            case "priceLTH":
+                return new BigDecimal(key);
+            default:
+                return null;
+        }
+    }
+
+    public String getSortField() {
+        return sortField;
+    }
+
+    public boolean isForward() {
+        return forward;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
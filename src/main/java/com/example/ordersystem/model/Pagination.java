@@ -6,11 +6,13 @@ package com.example.ordersystem.model;
 
 
 public class Pagination {
+    // Number of items in a page unless it is changed
+    public static final int DEFAULT_PAGE_SIZE = 12;
 
     private String sortCondition;
 
     // Number of items in a page
-    private int pageSize = 12;
+    private int pageSize = DEFAULT_PAGE_SIZE;
     private int blockSize = 12;
     // Current page
     private int page = 1;
@@ -33,6 +35,10 @@ public class Pagination {
     private int prevBlock;
     private int nextBlock;
 
+    // Keyset cursors of the neighbouring pages, null if there is no such page
+    private String prevCursor;
+    private String nextCursor;
+
 
     public Pagination(int totalItems, int page) {
 
@@ -169,4 +175,20 @@ public class Pagination {
     public void setNextBlock(int nextBlock) {
         this.nextBlock = nextBlock;
     }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public void setPrevCursor(String prevCursor) {
+        this.prevCursor = prevCursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
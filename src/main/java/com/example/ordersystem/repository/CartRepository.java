@@ -6,6 +6,8 @@ import com.example.ordersystem.model.Item;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+
 import java.util.List;
 
 /**
@@ -19,8 +21,29 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     List<Cart> findByAccount(Account account);
     Cart findByAccountAndItem(Account account, Item item);
 
+    //The carts of an account, locked until the transaction ends so they cannot change while an order is made from them
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.account.id = ?1")
+    List<Cart> findByAccountIdForUpdate(Long accountId);
+
+    //Item ID, item price and amount of each cart of an account, without loading the carts or their items
+    @Query("SELECT c.item.id, c.item.itemPrice, c.amount FROM Cart c WHERE c.account.id = ?1")
+    List<Object[]> findLinesByAccountId(Long accountId);
+
+    //Add an amount of an item to an account's cart with one statement, creating the cart if there is none.
+    //Returns the new amount and the price of the item, or no row if the item does not exist or is not available
+    @Query(value = "WITH item AS (SELECT id, itemPrice FROM items WHERE id = ?2 AND availability), " +
+            "added AS (INSERT INTO cart (id, account_id, item_id, amount) " +
+            "SELECT nextval('hibernate_sequence'), ?1, item.id, ?3 FROM item " +
+            "ON CONFLICT (account_id, item_id) DO UPDATE SET amount = cart.amount + excluded.amount RETURNING amount) " +
+            "SELECT added.amount, item.itemPrice FROM added, item", nativeQuery = true)
+    List<Object[]> addAmount(Long accountId, Long itemId, int amount);
+
+    @Query("DELETE FROM Cart c WHERE c.item.id = ?1")
+    @Modifying
+    int deleteByItemId(Long itemId);
+
     @Query("UPDATE Cart c SET c.amount = ?1 WHERE c.item.id = ?2 AND c.account.id = ?3")
     @Modifying
     int updateAmount(int amount, Long itemId, Long accountId);
 }
-
@@ -0,0 +1,27 @@
+package com.example.ordersystem.repository;
+
+import com.example.ordersystem.model.ImageContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * This class is the repository of ImageContent which uses the JPARepository interface
+ * It provides the statements to count the item images using each stored content
+ */
+@Repository
+public interface ImageContentRepository extends JpaRepository<ImageContent, String> {
+    @Modifying
+    @Query(value = "insert into imagecontents (hash, refCount) values (?1, 1) " +
+            "on conflict (hash) do update set refCount = imagecontents.refCount + 1", nativeQuery = true)
+    void addReference(String hash);
+
+    @Modifying
+    @Query("update ImageContent c set c.refCount = c.refCount - ?2 where c.hash = ?1")
+    void removeReferences(String hash, long count);
+
+    @Modifying
+    @Query("delete from ImageContent c where c.hash = ?1 and c.refCount <= 0")
+    int deleteIfUnreferenced(String hash);
+}
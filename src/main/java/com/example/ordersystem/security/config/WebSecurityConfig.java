@@ -43,6 +43,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/item-list").hasAuthority("ADMIN")
                 .antMatchers("/account-management/**").hasAuthority("ADMIN")
                 .antMatchers("/orderlist/**").hasAuthority("ADMIN")
+                .antMatchers("/actuator/**").hasAuthority("ADMIN")
                 .antMatchers("/shopping-cart/**").authenticated()
                 .antMatchers("/checkout/**").authenticated()
                 .antMatchers("/items/**","/item/**").hasAuthority("ADMIN")
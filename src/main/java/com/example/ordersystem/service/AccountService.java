@@ -1,5 +1,6 @@
 package com.example.ordersystem.service;
 
+import com.example.ordersystem.cache.CartSummaryCache;
 import com.example.ordersystem.exception.account.AccountNotFoundException;
 import com.example.ordersystem.exception.account.EmailAlreadyTakenException;
 import com.example.ordersystem.exception.account.InvalidEmailFormatException;
@@ -30,6 +31,7 @@ public class AccountService implements UserDetailsService {
     private final static String USER_NOT_FOUND_MSG = "user with email %s not found";
     private final AccountRepository accountRepository;
     private final BCryptPasswordEncoder bCryptPasswordEncoder; // Password encoder
+    private final CartSummaryCache cartSummaryCache;
 
     // Format for valid email
     private static final Pattern VALID_EMAIL_ADDRESS_REGEX = Pattern.compile("^[a-zA-Z0-9.!#$%&'*+/=?^_`{|}~-]+@[a-zA-Z0-9](?:[a-zA-Z0-9-]{0,61}[a-zA-Z0-9])?(?:\\.[a-zA-Z0-9](?:[a-zA-Z0-9-]{0,61}[a-zA-Z0-9])?)*$", Pattern.CASE_INSENSITIVE);
@@ -105,6 +107,7 @@ public class AccountService implements UserDetailsService {
     public Account deleteAccount(Long id){
         Account accountToDelete = getAccountById(id);
         accountRepository.delete(accountToDelete);
+        cartSummaryCache.invalidate(id);
         return accountToDelete;
     }
 
@@ -1,15 +1,26 @@
 package com.example.ordersystem.service;
 
+import com.example.ordersystem.cache.CacheTransactions;
+import com.example.ordersystem.cache.CartSummaryCache;
 import com.example.ordersystem.model.Account;
 import com.example.ordersystem.model.Cart;
+import com.example.ordersystem.model.CartOperation;
+import com.example.ordersystem.model.CartSummary;
 import com.example.ordersystem.model.Item;
 import com.example.ordersystem.repository.CartRepository;
 import com.example.ordersystem.repository.ItemRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * This class is the service layer for performing CRUD operations on items in the Cart
@@ -18,11 +29,17 @@ import java.util.List;
 @Transactional
 @Service
 public class CartService {
+    //Largest number of operations accepted in one call of applyOperations
+    public static final int MAX_OPERATIONS = 100;
 
     @Autowired
     private CartRepository cartRepository;
     @Autowired
     private ItemRepository itemRepository;
+    @Autowired
+    private CartSummaryCache cartSummaryCache;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     /**
      * Method to add an item to the cart of an account and return the number of that item in the cart
@@ -30,29 +47,23 @@ public class CartService {
      * @param amount - The quantity of the item to be added
      * @param user - The user Account object to which the cart belongs
      * @return The quantity number of that item currently in the cart
+     * @throws IllegalArgumentException - If the amount is less than 1
+     * @throws NoSuchElementException - If the item does not exist or is not available
      */
     public int addItem(Long itemId, int amount, Account user) {
-
-        int addedAmount = amount;
-        //Get the item and the user's cart
-        Item item = itemRepository.findById(itemId).get();
-        Cart cart = cartRepository.findByAccountAndItem(user, item);
+        if (amount < 1) {
+            throw new IllegalArgumentException("The amount added of item " + itemId + " must be positive");
+        }
 
         //If a cart exists in the database for that item and account, increase the quantity of the item in that cart
-        // else, it means no cart record exists in the database for that item and account, then create a new cart and add the item
-        if (cart != null) {
-            addedAmount = cart.getAmount() + addedAmount;
-            cart.setAmount(addedAmount);
-        } else {
-            cart = new Cart();
-            cart.setAmount(amount);
-            cart.setAccount(user);
-            cart.setItem(item);
+        // else, create a new cart with the item. Both happen in a single statement, which the unique (account, item)
+        // constraint makes safe when the same item is added twice at once
+        List<Object[]> added = cartRepository.addAmount(user.getId(), itemId, amount);
+        if (added.isEmpty()) {
+            throw new NoSuchElementException("No available item with ID " + itemId);
         }
-
-        //Save the cart into database
-        cartRepository.save(cart);
-        return addedAmount;
+        cartSummaryCache.invalidate(user.getId());
+        return ((Number) added.get(0)[0]).intValue();
 
     }
 
@@ -74,12 +85,35 @@ public class CartService {
         return cartRepository.findByAccount(account);
     }
 
+    /**
+     * Method to get the number of items and the total price of an account's cart, as shown on the cart icon
+     * @param accountId - The ID of the Account to which the cart belongs
+     * @return The CartSummary of the account, from the cache when possible
+     */
+    @Transactional(readOnly = true)
+    public CartSummary getCartSummary(Long accountId) {
+        if(!CacheTransactions.canUseCache()){
+            return loadCartSummary(accountId);
+        }
+        return cartSummaryCache.getSummary(accountId, () -> loadCartSummary(accountId));
+    }
+
+    private CartSummary loadCartSummary(Long accountId) {
+        Map<Long, CartSummary.Line> lines = new HashMap<>();
+        for(Object[] line: cartRepository.findLinesByAccountId(accountId)){
+            lines.put((Long) line[0], new CartSummary.Line((BigDecimal) line[1], (Integer) line[2]));
+        }
+        return new CartSummary(lines);
+    }
+
     /**
      * Method to delete a cart by ID
      * @param id - The ID of the cart to delete
      */
     public void deleteCart(Long id) {
-        cartRepository.delete(getCart(id));
+        Cart cart = getCart(id);
+        cartSummaryCache.invalidate(cart.getAccount().getId());
+        cartRepository.delete(cart);
     }
 
     /**
@@ -97,12 +131,131 @@ public class CartService {
      * @param itemId - The ID of the item to update
      * @param user - The user Account to which the cart belongs
      * @return The new subtotal price of that particular item in the user's cart
+     * @throws IllegalArgumentException - If the amount is less than 1, deleteCart removes an item from the cart
+     * @throws NoSuchElementException - If the item is not in the user's cart
      */
-    public int updateAmount(int amount, Long itemId, Account user) {
+    public BigDecimal updateAmount(int amount, Long itemId, Account user) {
+        if (amount < 1) {
+            throw new IllegalArgumentException("The amount of item " + itemId + " must be positive");
+        }
 
-        cartRepository.updateAmount(amount, itemId, user.getId());
+        if (cartRepository.updateAmount(amount, itemId, user.getId()) == 0) {
+            throw new NoSuchElementException("No item with ID " + itemId + " in the cart");
+        }
         Item item = itemRepository.findById(itemId).get();
+        cartSummaryCache.invalidate(user.getId());
 
-        return (item.getItemPrice().intValue() * amount); // Pass new amount multiplied by 'the int price of items'
+        return item.getItemPrice().multiply(BigDecimal.valueOf(amount)); // Pass new amount multiplied by the price of the item
+    }
+
+    /**
+     * The net change to one item of the cart after a list of operations:
+     * an amount to add to the cart, or, once the item has been set or removed, its final amount
+     */
+    static class NetChange {
+        private final boolean absolute;
+        private final int amount;
+
+        NetChange(boolean absolute, int amount) {
+            this.absolute = absolute;
+            this.amount = amount;
+        }
+
+        boolean isAbsolute() {
+            return absolute;
+        }
+
+        int getAmount() {
+            return amount;
+        }
+    }
+
+    /**
+     * Method to apply a list of changes to an account's cart in one transaction.
+     * The operations on each item are merged first, then all of them are written with at most two batched statements:
+     * one upsert for the items added or set, and one delete for the items removed.
+     * Adding or setting an item that does not exist or is not available does nothing.
+     * @param accountId - The ID of the Account to which the cart belongs
+     * @param operations - The changes to apply, in order
+     * @return The CartSummary of the account once the changes are applied
+     * @throws IllegalArgumentException - If an operation is not valid, then no change is applied
+     */
+    public CartSummary applyOperations(Long accountId, List<CartOperation> operations) {
+        Map<Long, NetChange> changes = mergeOperations(operations);
+
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> removals = new ArrayList<>();
+        for(Map.Entry<Long, NetChange> change: changes.entrySet()){
+            NetChange net = change.getValue();
+            if(net.isAbsolute() && net.getAmount() == 0){
+                removals.add(new Object[]{accountId, change.getKey()});
+            }else if(net.isAbsolute() || net.getAmount() > 0){
+                upserts.add(new Object[]{accountId, net.getAmount(), change.getKey(), net.isAbsolute()});
+            }
+        }
+
+        //Write pending changes of cart entities first, the statements below bypass Hibernate
+        cartRepository.flush();
+        if(!upserts.isEmpty()){
+            jdbcTemplate.batchUpdate("INSERT INTO cart (id, account_id, item_id, amount) " +
+                    "SELECT nextval('hibernate_sequence'), ?, id, ? FROM items WHERE id = ? AND availability " +
+                    "ON CONFLICT (account_id, item_id) DO UPDATE SET amount = " +
+                    "CASE WHEN ? THEN excluded.amount ELSE cart.amount + excluded.amount END", upserts);
+        }
+        if(!removals.isEmpty()){
+            jdbcTemplate.batchUpdate("DELETE FROM cart WHERE account_id = ? AND item_id = ?", removals);
+        }
+
+        cartSummaryCache.invalidate(accountId);
+        //Read the whole cart back in one query, so the result also shows changes made by other requests
+        return loadCartSummary(accountId);
+    }
+
+    /**
+     * Method to check a list of cart operations and merge the operations on each item into a single change
+     * @param operations - The operations, in order
+     * @return The net change of each item, in the order the items first appear
+     * @throws IllegalArgumentException - If there are too many operations or one of them is not valid
+     */
+    static Map<Long, NetChange> mergeOperations(List<CartOperation> operations) {
+        if(operations == null || operations.isEmpty()){
+            throw new IllegalArgumentException("No cart operations");
+        }
+        if(operations.size() > MAX_OPERATIONS){
+            throw new IllegalArgumentException("At most " + MAX_OPERATIONS + " cart operations are accepted at once");
+        }
+        Map<Long, NetChange> changes = new LinkedHashMap<>();
+        for(CartOperation operation: operations){
+            if(operation == null || operation.getItemId() == null){
+                throw new IllegalArgumentException("A cart operation has no item ID");
+            }
+            Long itemId = operation.getItemId();
+            NetChange current = changes.get(itemId);
+            int amount = operation.getAmount();
+            if(CartOperation.ADD.equals(operation.getType())){
+                if(amount < 1){
+                    throw new IllegalArgumentException("The amount added of item " + itemId + " must be positive");
+                }
+                //Adding after a set or remove is added to the final amount, else to the amount already in the cart
+                if(current == null){
+                    changes.put(itemId, new NetChange(false, amount));
+                }else if(current.getAmount() > Integer.MAX_VALUE - amount){
+                    throw new IllegalArgumentException("The amount of item " + itemId + " is too large");
+                }else{
+                    changes.put(itemId, new NetChange(current.isAbsolute(), current.getAmount() + amount));
+                }
+            }else if(CartOperation.SET.equals(operation.getType())){
+                if(amount < 0){
+                    throw new IllegalArgumentException("The amount of item " + itemId + " cannot be negative");
+                }
+                //Setting the amount to 0 removes the item
+                changes.put(itemId, new NetChange(true, amount));
+            }else if(CartOperation.REMOVE.equals(operation.getType())){
+                changes.put(itemId, new NetChange(true, 0));
+            }else{
+                throw new IllegalArgumentException("Unknown cart operation: " + operation.getType());
+            }
+        }
+        return changes;
     }
 }
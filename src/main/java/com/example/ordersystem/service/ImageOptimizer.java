@@ -0,0 +1,251 @@
+package com.example.ordersystem.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * This class re-encodes uploaded photos before they are stored, since camera pictures are much larger than the shop shows.
+ * JPEG and PNG images are turned the way their EXIF orientation says, scaled down to a maximum size and saved without
+ * any metadata: opaque images as progressive JPEG, transparent ones as PNG. Other formats are stored as uploaded.
+ */
+@Service
+public class ImageOptimizer {
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float jpegQuality;
+
+    public ImageOptimizer(@Value("${app.images.optimize:true}") boolean enabled,
+                          @Value("${app.images.max-dimension:1600}") int maxDimension,
+                          @Value("${app.images.jpeg-quality:0.85}") float jpegQuality){
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * An image re-encoded by the optimizer
+     */
+    public static class OptimizedImage {
+        private final byte[] content;
+        private final String contentType;
+        private final Dimension dimensions;
+
+        public OptimizedImage(byte[] content, String contentType, Dimension dimensions) {
+            this.content = content;
+            this.contentType = contentType;
+            this.dimensions = dimensions;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Dimension getDimensions() {
+            return dimensions;
+        }
+    }
+
+    /**
+     * Method to re-encode an image file
+     * @param file - The image file
+     * @param contentType - The MIME type detected from the first bytes of the file
+     * @return The optimized image, or null if the file should be stored as it is: it is not a JPEG or PNG image,
+     * or it is already small and upright and re-encoding it does not make it smaller
+     * @throws IOException - If the file cannot be read or is not an image javax.imageio can decode
+     */
+    public OptimizedImage optimize(Path file, String contentType) throws IOException {
+        boolean jpeg = "image/jpeg".equals(contentType);
+        if(!enabled || (!jpeg && !"image/png".equals(contentType))){
+            return null;
+        }
+        int orientation = 1;
+        if(jpeg){
+            try (InputStream content = Files.newInputStream(file)) {
+                orientation = readOrientation(content);
+            }
+        }
+
+        BufferedImage source;
+        int sourceWidth;
+        int sourceHeight;
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()){
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                sourceWidth = reader.getWidth(0);
+                sourceHeight = reader.getHeight(0);
+                //Decode only every n-th pixel of very large images, keeping twice the final size for smooth scaling
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(sourceWidth, sourceHeight) / (maxDimension * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                source = reader.read(0, param);
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+
+        double ratio = Math.min(1, (double) maxDimension / Math.max(sourceWidth, sourceHeight));
+        int width = Math.max(1, (int) Math.round(sourceWidth * ratio));
+        int height = Math.max(1, (int) Math.round(sourceHeight * ratio));
+        boolean transparent = source.getColorModel().hasAlpha();
+        BufferedImage target = draw(source, width, height, orientation, transparent);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if(transparent){
+            ImageIO.write(target, "png", encoded);
+        }else{
+            ThumbnailService.writeJpeg(target, encoded, jpegQuality, true);
+        }
+        //A small upright image that does not get smaller is kept as uploaded
+        if(ratio == 1 && orientation == 1 && encoded.size() >= Files.size(file)){
+            return null;
+        }
+        return new OptimizedImage(encoded.toByteArray(), transparent ? "image/png" : "image/jpeg",
+                new Dimension(target.getWidth(), target.getHeight()));
+    }
+
+    /**
+     * Method to scale an image and turn it upright
+     * @param source - The decoded image
+     * @param width - The width to scale the image to, before turning it
+     * @param height - The height to scale the image to, before turning it
+     * @param orientation - The EXIF orientation of the image, from 1 to 8
+     * @param transparent - Whether the image keeps its transparency, otherwise it is drawn over white
+     * @return The new image
+     */
+    static BufferedImage draw(BufferedImage source, int width, int height, int orientation, boolean transparent){
+        //Orientations 5 to 8 are turned by a quarter, so their width and height are swapped
+        boolean swapped = orientation >= 5 && orientation <= 8;
+        BufferedImage target = new BufferedImage(swapped ? height : width, swapped ? width : height,
+                transparent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 2: //Flip left to right
+                transform.translate(width, 0);
+                transform.scale(-1, 1);
+                break;
+            case 3: //Turn half a turn
+                transform.translate(width, height);
+                transform.rotate(Math.PI);
+                break;
+            case 4: //Flip top to bottom
+                transform.translate(0, height);
+                transform.scale(1, -1);
+                break;
+            case 5: //Flip over the top-left to bottom-right diagonal
+                transform.rotate(-Math.PI / 2);
+                transform.scale(-1, 1);
+                break;
+            case 6: //Turn a quarter clockwise
+                transform.translate(height, 0);
+                transform.rotate(Math.PI / 2);
+                break;
+            case 7: //Flip over the top-right to bottom-left diagonal
+                transform.scale(-1, 1);
+                transform.translate(-height, 0);
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+                break;
+            case 8: //Turn a quarter anticlockwise
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+                break;
+            default:
+                break;
+        }
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if(!transparent){
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, target.getWidth(), target.getHeight());
+            }
+            graphics.transform(transform);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        }
+        finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Method to read the EXIF orientation of a JPEG image, javax.imageio decodes the pixels as stored and ignores it
+     * @param content - The JPEG image
+     * @return The orientation from 1 to 8, 1 if the image is stored upright or has no orientation
+     * @throws IOException - If the image cannot be read
+     */
+    static int readOrientation(InputStream content) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(content));
+        if(data.readUnsignedShort() != 0xFFD8){
+            return 1;
+        }
+        //The EXIF segment comes before the image data, in one of the first segments
+        while(true){
+            int marker = data.readUnsignedShort();
+            if((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9){
+                return 1;
+            }
+            int length = data.readUnsignedShort() - 2;
+            if(length < 0){
+                return 1;
+            }
+            byte[] segment = new byte[length];
+            data.readFully(segment);
+            if(marker == 0xFFE1 && length > 14 && segment[0] == 'E' && segment[1] == 'x' && segment[2] == 'i'
+                    && segment[3] == 'f' && segment[4] == 0 && segment[5] == 0){
+                return readTiffOrientation(ByteBuffer.wrap(segment, 6, length - 6).slice());
+            }
+        }
+    }
+
+    private static int readTiffOrientation(ByteBuffer tiff){
+        try {
+            tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int directory = tiff.getInt(4);
+            int entries = tiff.getShort(directory) & 0xFFFF;
+            for(int i = 0; i < entries; i++){
+                int entry = directory + 2 + i * 12;
+                if((tiff.getShort(entry) & 0xFFFF) == 0x0112){
+                    int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                    return orientation >= 1 && orientation <= 8 ? orientation : 1;
+                }
+            }
+        }
+        catch (IndexOutOfBoundsException e) {
+            //A broken EXIF segment is ignored
+        }
+        return 1;
+    }
+}
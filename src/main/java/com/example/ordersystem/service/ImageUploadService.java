@@ -0,0 +1,192 @@
+package com.example.ordersystem.service;
+
+import com.example.ordersystem.model.ImageUploadResult;
+import com.example.ordersystem.service.ItemImageService.UploadedImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class saves the images uploaded for an item several files at a time.
+ * Each file is checked, hashed and copied into the image store by a small pool of workers shared by all uploads,
+ * then all copied files are saved to the database together, in the order they were sent.
+ */
+@Service
+public class ImageUploadService {
+    @Autowired
+    private ItemImageService itemImageService;
+
+    private final int maxFiles;
+    private final ThreadPoolExecutor executor;
+
+    public ImageUploadService(@Value("${app.image-upload.threads:4}") int threads,
+                              @Value("${app.image-upload.queue-size:16}") int queueSize,
+                              @Value("${app.image-upload.max-files:10}") int maxFiles){
+        this.maxFiles = maxFiles;
+        //Copying uploads is mostly disk work, so a few workers are enough for every admin at once.
+        //When the queue is full the upload is refused rather than copied on the request thread, which would tie up the web server.
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "image-upload-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    /**
+     * Method to get the largest number of files accepted in one upload
+     * @return The number of files
+     */
+    public int getMaxFiles(){
+        return maxFiles;
+    }
+
+    /**
+     * Method to save uploaded images of an item, copying several files at once.
+     * A file that cannot be saved does not stop the others.
+     * @param itemId - The ID of the item that is linked to the images
+     * @param files - The uploaded image files, in the order they were sent
+     * @return The result of each file, in the same order
+     * @throws RejectedExecutionException If the workers are too busy to take the files, nothing is saved then
+     */
+    public ImageUploadResult uploadImages(Long itemId, List<MultipartFile> files){
+        //Every image staged by this upload, so the ones not saved are discarded however the upload ends.
+        //A task still running once the upload has ended discards its own image.
+        List<UploadedImage> stagedImages = new ArrayList<>();
+        AtomicBoolean ended = new AtomicBoolean();
+        try {
+            return stageAndSave(itemId, files, stagedImages, ended);
+        }
+        finally {
+            List<UploadedImage> toDiscard;
+            synchronized (stagedImages){
+                ended.set(true);
+                toDiscard = new ArrayList<>(stagedImages);
+            }
+            //Saved images have been moved into the store already, discarding them does nothing
+            toDiscard.forEach(itemImageService::discardUpload);
+        }
+    }
+
+    private ImageUploadResult stageAndSave(Long itemId, List<MultipartFile> files,
+                                           List<UploadedImage> stagedImages, AtomicBoolean ended){
+        List<Future<UploadedImage>> tasks = new ArrayList<>();
+        try {
+            for(MultipartFile file: files){
+                tasks.add(executor.submit(() -> {
+                    UploadedImage image = itemImageService.stageUpload(file);
+                    synchronized (stagedImages){
+                        if(!ended.get()){
+                            stagedImages.add(image);
+                            return image;
+                        }
+                    }
+                    itemImageService.discardUpload(image);
+                    throw new CancellationException();
+                }));
+            }
+        }
+        catch (RejectedExecutionException e) {
+            //The queue is full: drop the files already queued, the ones already copied are discarded when the upload ends
+            tasks.forEach(task -> task.cancel(false));
+            throw e;
+        }
+
+        //Collect the result of every file, in the order they were sent
+        String[] errors = new String[files.size()];
+        List<UploadedImage> staged = new ArrayList<>();
+        for(int i = 0; i < tasks.size(); i++){
+            try {
+                staged.add(tasks.get(i).get());
+            }
+            catch (InterruptedException e) {
+                //The request is abandoned: the files not started yet are not copied
+                Thread.currentThread().interrupt();
+                tasks.forEach(task -> task.cancel(false));
+                staged.add(null);
+                errors[i] = errorMessage(e);
+            }
+            catch (ExecutionException e) {
+                staged.add(null);
+                errors[i] = errorMessage(e.getCause());
+            }
+            catch (CancellationException e) {
+                staged.add(null);
+                errors[i] = errorMessage(e);
+            }
+        }
+
+        List<UploadedImage> toSave = new ArrayList<>();
+        for(UploadedImage image: staged){
+            if(image != null){
+                toSave.add(image);
+            }
+        }
+        List<Long> ids = new ArrayList<>();
+        String saveError = null;
+        if(!toSave.isEmpty()){
+            try {
+                ids = itemImageService.saveUploadedImages(itemId, toSave);
+            }
+            catch (RuntimeException e) {
+                saveError = errorMessage(e);
+            }
+        }
+
+        ImageUploadResult result = new ImageUploadResult();
+        int saved = 0;
+        for(int i = 0; i < files.size(); i++){
+            MultipartFile file = files.get(i);
+            UploadedImage image = staged.get(i);
+            if(image == null){
+                result.addFailed(file.getOriginalFilename(), file.getSize(), errors[i]);
+            }
+            else if(saveError != null){
+                result.addFailed(file.getOriginalFilename(), file.getSize(), saveError);
+            }
+            else{
+                result.addUploaded(file.getOriginalFilename(), ids.get(saved++), image.getOriginalSize(),
+                        image.getStaged().getSize(), image.getContentType());
+            }
+        }
+        return result;
+    }
+
+    private static String errorMessage(Throwable e){
+        if(e instanceof IllegalArgumentException){
+            return e.getMessage();
+        }
+        if(e instanceof NoSuchElementException){
+            return "The item does not exist";
+        }
+        if(e instanceof IOException){
+            return "The file could not be read";
+        }
+        if(e instanceof InterruptedException || e instanceof CancellationException){
+            return "The upload was cancelled";
+        }
+        return "The file could not be saved";
+    }
+}
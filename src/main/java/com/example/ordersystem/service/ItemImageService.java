@@ -1,16 +1,58 @@
 package com.example.ordersystem.service;
 
+import com.example.ordersystem.cache.CacheTransactions;
+import com.example.ordersystem.cache.CatalogVersions;
+import com.example.ordersystem.cache.ItemCatalogCache;
+import com.example.ordersystem.cache.ItemImageCache;
 import com.example.ordersystem.model.Item;
 import com.example.ordersystem.model.ItemImage;
+import com.example.ordersystem.repository.ImageContentRepository;
 import com.example.ordersystem.repository.ItemImageRepository;
 import com.example.ordersystem.repository.ItemRepository;
+import com.example.ordersystem.service.ImageOptimizer.OptimizedImage;
+import com.example.ordersystem.storage.ImageStore;
+import com.example.ordersystem.storage.StagedImage;
+import com.example.ordersystem.storage.StoredContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 /**
  * This class is the service layer for performing CRUD operations on item images
@@ -18,40 +60,181 @@ import java.util.List;
 @Transactional
 @Service
 public class ItemImageService {
+    private static final Logger log = LoggerFactory.getLogger(ItemImageService.class);
+
+    //Image types recognised from their first bytes, the only ones sent with their own type
+    public static final Set<String> SAFE_IMAGE_TYPES = Set.of("image/jpeg", "image/png", "image/gif", "image/webp");
+
     @Autowired
     private ItemImageRepository itemImageRepository;
     @Autowired
     private ItemRepository itemRepository;
+    @Autowired
+    private ItemCatalogCache catalogCache;
+    @Autowired
+    private CatalogVersions catalogVersions;
+    @Autowired
+    private ImageContentRepository imageContentRepository;
+    @Autowired
+    private ImageStore imageStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ThumbnailService thumbnailService;
+    @Autowired
+    private ItemImageCache imageCache;
+    @Autowired
+    private ImageOptimizer imageOptimizer;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Value("${app.image-store.sweep-on-startup:true}")
+    private boolean sweepOnStartup;
+
+    /**
+     * An uploaded image copied into the image store, waiting to be saved to the database
+     */
+    public static class UploadedImage {
+        private final StagedImage staged;
+        private final String contentType;
+        // Size of the image in pixels, null if it could not be read
+        private final Dimension dimensions;
+        // Size in bytes of the uploaded file, before it was optimized
+        private final long originalSize;
+
+        public UploadedImage(StagedImage staged, String contentType, Dimension dimensions, long originalSize) {
+            this.staged = staged;
+            this.contentType = contentType;
+            this.dimensions = dimensions;
+            this.originalSize = originalSize;
+        }
+
+        public StagedImage getStaged() {
+            return staged;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Dimension getDimensions() {
+            return dimensions;
+        }
+
+        public long getOriginalSize() {
+            return originalSize;
+        }
+    }
 
     /**
      * Method to save the item image as a new record in the database table
      * @param itemId - The ID of the item that is linked to the image
      * @param file - The image file which will be saved
+     * @throws IOException - If the file cannot be read or copied, nothing is saved then
+     * @throws IllegalArgumentException - If the file is empty or is not an image
      */
-    public void saveItemImage(Long itemId, MultipartFile file) {
-
+    public void saveItemImage(Long itemId, MultipartFile file) throws IOException {
+        UploadedImage image = stageUpload(file);
         try {
-            Item item = itemRepository.findById(itemId).get();
-            ItemImage newImage = new ItemImage();
+            saveUploadedImages(itemId, Collections.singletonList(image));
+        }
+        finally {
+            //A saved image has been moved into the store already, discarding it does nothing.
+            //If saving failed, the transaction is rolled back with the count of its content.
+            discardUpload(image);
+        }
+    }
 
-            //Convert the multipart media file into a byte array to be stored in the database
-            byte[] byteObjects = new byte[file.getBytes().length];
+    /**
+     * Method to check an uploaded image and copy it into the image store, without saving it to the database yet.
+     * It does not use the database, so many uploads can be staged at once outside of any transaction.
+     * @param file - The uploaded image file
+     * @return The staged image, which must then be saved with saveUploadedImages or discarded
+     * @throws IOException - If the file cannot be read or copied
+     * @throws IllegalArgumentException - If the file is empty or is not an image
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public UploadedImage stageUpload(MultipartFile file) throws IOException {
+        if(file.isEmpty()){
+            throw new IllegalArgumentException("The file is empty");
+        }
+        try (BufferedInputStream content = new BufferedInputStream(file.getInputStream())) {
+            //Detect the type from the first bytes, then copy the upload into the image store through a small buffer.
+            //It is never copied into a byte array.
+            String contentType = detectContentType(content, file.getContentType());
+            if(!contentType.startsWith("image/")){
+                throw new IllegalArgumentException("The file is not an image");
+            }
+            return optimize(imageStore.stage(content), contentType);
+        }
+    }
 
-            int i = 0;
+    /**
+     * Method to replace a staged upload by its optimized image, smaller and without metadata
+     * @param original - The uploaded file copied into the store
+     * @param contentType - The MIME type detected from the first bytes of the file
+     * @return The staged image to save, the original one if it is not optimized
+     * @throws IOException - If the optimized image cannot be copied into the store
+     */
+    private UploadedImage optimize(StagedImage original, String contentType) throws IOException {
+        OptimizedImage optimized;
+        try {
+            optimized = imageOptimizer.optimize(original.getFile(), contentType);
+        }
+        catch (IOException | RuntimeException e) {
+            //Images javax.imageio cannot decode, such as CMYK JPEGs, are saved as uploaded
+            optimized = null;
+        }
+        if(optimized == null){
+            return new UploadedImage(original, contentType, readDimensions(original), original.getSize());
+        }
+        try {
+            StagedImage staged = imageStore.stage(new ByteArrayInputStream(optimized.getContent()));
+            return new UploadedImage(staged, optimized.getContentType(), optimized.getDimensions(), original.getSize());
+        }
+        finally {
+            imageStore.discard(original);
+        }
+    }
 
-            for (byte b : file.getBytes()){
-                byteObjects[i++] = b;
-            }
+    /**
+     * Method to save staged images as new records in the database table, in the given order.
+     * Content that is stored already is not stored again.
+     * @param itemId - The ID of the item that is linked to the images
+     * @param images - The images staged by stageUpload
+     * @return The IDs of the saved item images, in the same order as the images
+     */
+    public List<Long> saveUploadedImages(Long itemId, List<UploadedImage> images) {
+        Item item = itemRepository.findById(itemId).get();
+        List<Long> ids = new ArrayList<>();
+        for(UploadedImage image: images){
+            StagedImage staged = image.getStaged();
+            addContent(staged);
 
-            //Link the image to the item, then save its content to the database
+            //Link the image to the item, then save the key of its content to the database
+            ItemImage newImage = new ItemImage();
             newImage.setItem(item);
-            newImage.setImage(byteObjects);
-            itemImageRepository.save(newImage);
-
-        } catch (IOException e) {
-            System.out.println("An error occur when saving the image!");
-            e.printStackTrace();
+            newImage.setContentHash(staged.getHash());
+            newImage.setContentType(image.getContentType());
+            newImage.setContentLength(staged.getSize());
+            newImage.setOriginalLength(image.getOriginalSize());
+            setDimensions(newImage, image.getDimensions());
+            ids.add(itemImageRepository.save(newImage).getId());
+            //Make the thumbnails in the background once the image is saved
+            CacheTransactions.afterCommit(() -> thumbnailService.makeThumbnails(staged.getHash(), image.getContentType()));
         }
+        //The cached item still holds its old list of images
+        catalogCache.invalidate(itemId);
+        catalogVersions.itemChanged(itemId);
+        return ids;
+    }
+
+    /**
+     * Method to delete an image staged by stageUpload which will not be saved
+     * @param image - The staged image
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void discardUpload(UploadedImage image){
+        imageStore.discard(image.getStaged());
     }
 
     /**
@@ -59,8 +242,366 @@ public class ItemImageService {
      * @param id - The ID of the item image to get
      * @return The ItemImage object to get
      */
+    @Transactional(readOnly = true)
     public ItemImage getItemImageById(Long id){
-        return itemImageRepository.findById(id).get();
+        if(!CacheTransactions.canUseCache()){
+            return itemImageRepository.findById(id).get();
+        }
+        ItemImage itemImage = imageCache.getImage(id, () -> itemImageRepository.findById(id).orElse(null));
+        if(itemImage == null){
+            throw new NoSuchElementException("No item image with ID " + id);
+        }
+        return itemImage;
+    }
+
+    /**
+     * Method to write the content of an item image to a stream, without loading the whole image into memory
+     * @param id - The ID of the item image to write
+     * @param out - The stream to write the image to
+     * @throws IOException - If the image cannot be read or written
+     */
+    public void writeItemImage(Long id, OutputStream out) throws IOException {
+        ItemImage itemImage = itemImageRepository.findById(id).get();
+        imageStore.writeTo(itemImage.getContentHash(), 0, itemImage.getContentLength(), out);
+    }
+
+    /**
+     * Method to write the content of an image still saved in the database to a stream,
+     * used until the image has been moved into the image store
+     * @param id - The ID of the item image to write
+     * @param contentType - Receives the MIME type of the image before any byte is written
+     * @param out - The stream to write the image to
+     * @throws IOException - If the image cannot be read or written
+     * @throws NoSuchElementException - If the image has no content in the database
+     */
+    @Transactional(readOnly = true)
+    public void writeDatabaseImage(Long id, Consumer<String> contentType, OutputStream out) throws IOException {
+        //Large objects can only be read inside the transaction
+        Boolean found;
+        try {
+            found = jdbcTemplate.query("select image, contentType from itemimages where id = ? and image is not null",
+                    (ResultSetExtractor<Boolean>) rs -> {
+                        if(!rs.next()){
+                            return false;
+                        }
+                        try (BufferedInputStream content = new BufferedInputStream(rs.getBlob(1).getBinaryStream())) {
+                            String type = rs.getString(2);
+                            contentType.accept(SAFE_IMAGE_TYPES.contains(type) ? type : detectContentType(content, null));
+                            content.transferTo(out);
+                        }
+                        catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return true;
+                    }, id);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if(!Boolean.TRUE.equals(found)){
+            throw new NoSuchElementException("No content for item image " + id);
+        }
+    }
+
+    /**
+     * Method to get the content to send for an item image: the original image, or its thumbnail for a width.
+     * It does not use the database, so it is called outside of any transaction.
+     * @param itemImage - The item image to send
+     * @param width - The width the client asked for in pixels, or null for the original image
+     * @return The content to send
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StoredContent getImageContent(ItemImage itemImage, Integer width){
+        if(width != null){
+            StoredContent thumbnail = thumbnailService.getThumbnail(itemImage, width);
+            if(thumbnail != null){
+                return thumbnail;
+            }
+        }
+        return new StoredContent(itemImage.getContentHash(), itemImage.getContentType(), itemImage.getContentLength());
+    }
+
+    /**
+     * Method to check whether thumbnails are made for a requested width
+     * @param width - The width the client asked for in pixels
+     * @return True if a thumbnail at least as wide is made for every image
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean hasThumbnail(int width){
+        return thumbnailService.chooseWidth(width) != null;
+    }
+
+    /**
+     * Method to write part of a content to a stream, used to answer HTTP Range requests.
+     * The content is read from the image store only, so no database connection is held while the client receives it.
+     * @param content - The content to write
+     * @param start - The position of the first byte to write, starting from 0
+     * @param length - The number of bytes to write
+     * @param out - The stream to write the image to
+     * @throws IOException - If the image cannot be read or written
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void writeContent(StoredContent content, long start, long length, OutputStream out) throws IOException {
+        //Small contents are sent from memory once they have been read, larger ones are always sent from the store
+        ByteBuffer cached = imageCache.getContent(content.getKey(), content.getLength(), () -> readContent(content));
+        if(cached == null){
+            imageStore.writeTo(content.getKey(), start, length, out);
+            return;
+        }
+        cached.position((int) start).limit((int) (start + length));
+        if(cached.hasArray()){
+            out.write(cached.array(), cached.arrayOffset() + cached.position(), cached.remaining());
+        }else{
+            Channels.newChannel(out).write(cached);
+        }
+    }
+
+    private byte[] readContent(StoredContent content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) content.getLength());
+        imageStore.writeTo(content.getKey(), 0, content.getLength(), bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Method to get the local file holding a content, so the web server can send it directly
+     * @param content - The content
+     * @return The file, or null if the image store does not keep its contents in local files
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Path getContentFile(StoredContent content){
+        return imageStore.getFile(content.getKey());
+    }
+
+    /**
+     * Method to copy the content of an image saved before the image store was used from the database into the store.
+     * The large object holding it is kept, until dropDatabaseImage has checked that the store holds the content.
+     * @param id - The ID of the item image to move
+     */
+    public void moveDatabaseImage(Long id){
+        ItemImage itemImage = itemImageRepository.findById(id).get();
+        //Large objects can only be read inside the transaction
+        StagedImage staged = jdbcTemplate.query("select image from itemimages where id = ? and image is not null",
+                (ResultSetExtractor<StagedImage>) rs -> {
+                    if(!rs.next()){
+                        return null;
+                    }
+                    try (BufferedInputStream content = new BufferedInputStream(rs.getBlob(1).getBinaryStream())) {
+                        if(itemImage.getContentType() == null){
+                            itemImage.setContentType(detectContentType(content, null));
+                        }
+                        return imageStore.stage(content);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, id);
+        if(staged == null){
+            return;
+        }
+        addContent(staged);
+
+        itemImage.setContentHash(staged.getHash());
+        itemImage.setContentLength(staged.getSize());
+        itemImage.setOriginalLength(staged.getSize());
+        setDimensions(itemImage, readDimensions(staged));
+        if(itemImage.getCreatedAt() == null){
+            itemImage.setCreatedAt(Instant.now());
+        }
+        imageCache.invalidateImage(id);
+    }
+
+    /**
+     * Method to remove the large object of an image moved into the image store from the database,
+     * once the store is checked to hold its whole content
+     * @param id - The ID of the item image
+     * @return True if the large object has been removed, false if the content is missing from the store
+     */
+    public boolean dropDatabaseImage(Long id){
+        ItemImage itemImage = itemImageRepository.findById(id).get();
+        String hash = itemImage.getContentHash();
+        try {
+            if(hash == null || !imageStore.contains(hash) || imageStore.size(hash) != itemImage.getContentLength()){
+                return false;
+            }
+        }
+        catch (IOException e) {
+            return false;
+        }
+        jdbcTemplate.queryForList("select lo_unlink(image) from itemimages where id = ? and image is not null", id);
+        jdbcTemplate.update("update itemimages set image = null where id = ?", id);
+        return true;
+    }
+
+    /**
+     * Method to read the size of a staged image from its header, so pages can use it without reading the content
+     * @param staged - The content copied into the store
+     * @return The width and height of the image in pixels, or null if it cannot be read
+     */
+    private static Dimension readDimensions(StagedImage staged){
+        try (InputStream content = Files.newInputStream(staged.getFile())) {
+            return ThumbnailService.readDimensions(content);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void setDimensions(ItemImage itemImage, Dimension dimensions){
+        if(dimensions != null){
+            itemImage.setWidth(dimensions.width);
+            itemImage.setHeight(dimensions.height);
+        }
+    }
+
+    /**
+     * Method to count one more image using a staged content, then make the content readable in the store.
+     * If the transaction rolls back, the content is deleted again unless another image uses it.
+     * @param staged - The content copied into the store
+     */
+    private void addContent(StagedImage staged){
+        try {
+            //The count is updated first: its row stays locked until this transaction ends,
+            //so the content cannot be deleted by deleteContentIfUnreferenced before this image is saved
+            imageContentRepository.addReference(staged.getHash());
+            imageStore.commit(staged);
+            CacheTransactions.afterRollback(() -> deleteContentLater(staged.getHash()));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            imageStore.discard(staged);
+        }
+    }
+
+    /**
+     * Method to count one less image using each of the given contents,
+     * and delete the contents no image uses anymore from the image store once the transaction commits
+     * @param hashes - The hashes of the contents of the images that have been deleted, one per image
+     */
+    public void releaseContent(Collection<String> hashes){
+        //Count the images per content, in hash order so concurrent deletes always lock the count rows in the same order
+        Map<String, Long> references = new TreeMap<>();
+        for(String hash: hashes){
+            if(hash != null){
+                references.merge(hash, 1L, Long::sum);
+            }
+        }
+        for(Map.Entry<String, Long> reference: references.entrySet()){
+            String hash = reference.getKey();
+            imageContentRepository.removeReferences(hash, reference.getValue());
+            //The file is only deleted once the images are, so a rollback finds its contents still stored
+            if(imageContentRepository.deleteIfUnreferenced(hash) > 0){
+                CacheTransactions.afterCommit(() -> deleteContentLater(hash));
+            }
+        }
+    }
+
+    private void deleteContentLater(String hash){
+        try {
+            deleteContentIfUnreferenced(hash);
+        }
+        catch (RuntimeException e) {
+            //The file is left in the store, sweepUnreferencedContents deletes it at the next start
+            log.warn("Could not delete image content {}", hash, e);
+        }
+    }
+
+    /**
+     * Method to delete a content from the image store if no image uses it, in a short transaction of its own.
+     * A count row of 0 is inserted for the content while its file is deleted: an upload of the same content
+     * that is not committed yet makes it wait and keep the file, and a later upload waits until the file is gone
+     * and stores it again.
+     * @param hash - The SHA-256 of the content in hex
+     * @return True if the content has been deleted, false if an image uses it
+     */
+    public boolean deleteContentIfUnreferenced(String hash){
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Boolean deleted = transaction.execute(status -> {
+            if(jdbcTemplate.update("insert into imagecontents (hash, refCount) values (?, 0) on conflict (hash) do nothing", hash) == 0){
+                return false;
+            }
+            try {
+                imageStore.delete(hash);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            jdbcTemplate.update("delete from imagecontents where hash = ? and refCount <= 0", hash);
+            return true;
+        });
+        if(Boolean.TRUE.equals(deleted)){
+            imageCache.invalidateContent(hash);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to delete the contents no image uses from the image store when the application starts.
+     * They are left by uploads that were stopped before their transaction ended, by deletes that failed,
+     * and by thumbnails written while their content was being deleted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void onApplicationReady(){
+        if(sweepOnStartup){
+            sweepUnreferencedContents();
+        }
+    }
+
+    /**
+     * Method to delete the contents no image uses from the image store
+     * @return The number of contents that have been deleted
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int sweepUnreferencedContents(){
+        List<String> stored;
+        try {
+            stored = imageStore.listHashes();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Set<String> referenced = new HashSet<>(jdbcTemplate.queryForList("select hash from imagecontents", String.class));
+        int deleted = 0;
+        for(String hash: stored){
+            //Each content is checked again under its lock, an upload may have stored it since the list was read
+            if(!referenced.contains(hash) && deleteContentIfUnreferenced(hash)){
+                deleted++;
+            }
+        }
+        if(deleted > 0){
+            log.info("Deleted {} image contents no item image uses", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Method to delete all images of an item with one statement, without loading them
+     * @param itemId - The ID of the item whose images will be deleted
+     * @return The number of images that have been deleted
+     */
+    public int deleteItemImages(Long itemId){
+        //Write pending changes first, the statement runs beside Hibernate
+        itemImageRepository.flush();
+        List<String> hashes = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        jdbcTemplate.query("delete from itemimages where item_id = ? returning id, contentHash", rs -> {
+            ids.add(rs.getLong(1));
+            hashes.add(rs.getString(2));
+        }, itemId);
+        if(ids.isEmpty()){
+            return 0;
+        }
+        for(Long id: ids){
+            imageCache.invalidateImage(id);
+        }
+        releaseContent(hashes);
+        catalogCache.invalidate(itemId);
+        catalogVersions.itemChanged(itemId);
+        return ids.size();
     }
 
     /**
@@ -77,5 +618,50 @@ public class ItemImageService {
      */
     public void deleteItemImage(ItemImage itemImage){
         itemImageRepository.delete(itemImage);
+        imageCache.invalidateImage(itemImage.getId());
+        releaseContent(Collections.singletonList(itemImage.getContentHash()));
+        catalogCache.invalidate(itemImage.getItem().getId());
+        catalogVersions.itemChanged(itemImage.getItem().getId());
+    }
+
+    /**
+     * Method to detect the MIME type of an image from its first bytes, without consuming them
+     * @param content - The image content, which must support mark and reset
+     * @param declaredType - The type sent by the client, which is ignored
+     * @return The MIME type of the image, application/octet-stream if it is not one of SAFE_IMAGE_TYPES
+     * @throws IOException - If the content cannot be read
+     */
+    private static String detectContentType(InputStream content, String declaredType) throws IOException {
+        content.mark(12);
+        byte[] header = content.readNBytes(12);
+        content.reset();
+
+        if(header.length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF){
+            return "image/jpeg";
+        }
+        if(header.length >= 8 && (header[0] & 0xFF) == 0x89 && startsWith(header, 1, "PNG")){
+            return "image/png";
+        }
+        if(startsWith(header, 0, "GIF8")){
+            return "image/gif";
+        }
+        if(startsWith(header, 0, "RIFF") && startsWith(header, 8, "WEBP")){
+            return "image/webp";
+        }
+        //The type sent by the client is never trusted: an SVG image, for example, may hold scripts
+        return "application/octet-stream";
+    }
+
+    private static boolean startsWith(byte[] header, int offset, String magic){
+        byte[] magicBytes = magic.getBytes(StandardCharsets.US_ASCII);
+        if(header.length < offset + magicBytes.length){
+            return false;
+        }
+        for(int i = 0; i < magicBytes.length; i++){
+            if(header[offset + i] != magicBytes[i]){
+                return false;
+            }
+        }
+        return true;
     }
 }
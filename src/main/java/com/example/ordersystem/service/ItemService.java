@@ -1,22 +1,55 @@
 package com.example.ordersystem.service;
 
+import com.example.ordersystem.cache.CacheTransactions;
+import com.example.ordersystem.cache.CartSummaryCache;
+import com.example.ordersystem.cache.CatalogVersions;
+import com.example.ordersystem.cache.ItemCatalogCache;
 import com.example.ordersystem.exception.item.InvalidItemDescriptionException;
 import com.example.ordersystem.exception.item.InvalidItemNameException;
 import com.example.ordersystem.exception.item.InvalidItemPriceException;
-import com.example.ordersystem.model.Cart;
+import com.example.ordersystem.index.CategoryFacet;
+import com.example.ordersystem.index.CategoryFacetIndex;
+import com.example.ordersystem.index.ItemFacet;
+import com.example.ordersystem.index.ItemSearchIndex;
+import com.example.ordersystem.index.SearchDocument;
 import com.example.ordersystem.model.Item;
+import com.example.ordersystem.model.ItemExport;
+import com.example.ordersystem.model.ItemImportResult;
+import com.example.ordersystem.model.ItemImportRow;
+import com.example.ordersystem.model.ItemPage;
+import com.example.ordersystem.model.ItemSummary;
+import com.example.ordersystem.model.PageCursor;
 import com.example.ordersystem.repository.CartRepository;
 import com.example.ordersystem.repository.ItemRepository;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * This class is the service layer for performing CRUD operations on Items
@@ -24,6 +57,12 @@ import java.util.Set;
 @Transactional
 @Service
 public class ItemService {
+    //Above this many matches a search goes back to the database instead of sending every ID as a query parameter
+    private static final int MAX_SEARCH_IDS = 1000;
+    //Selects the columns shown by the item listings, without loading the Item entities
+    private static final String SUMMARY_SELECT = "select new com.example.ordersystem.model.ItemSummary("
+            + "b.id, b.itemName, b.itemPrice, b.category, b.availability, b.firstImageId) from Item b";
+
     @PersistenceContext
     private EntityManager em;
 
@@ -31,6 +70,37 @@ public class ItemService {
     private ItemRepository itemRepository;
     @Autowired
     private CartRepository cartRepository;
+    @Autowired
+    private ItemImageService itemImageService;
+    @Autowired
+    private ItemCatalogCache catalogCache;
+    @Autowired
+    private CatalogVersions catalogVersions;
+    @Autowired
+    private CartSummaryCache cartSummaryCache;
+    @Autowired
+    private CategoryFacetIndex facetIndex;
+    @Autowired
+    private ItemSearchIndex searchIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    //Number of rows the export reads from the database at a time
+    @Value("${app.export.fetch-size:500}")
+    private int exportFetchSize;
+    //Number of items the bulk import inserts with each batch of statements
+    @Value("${app.import.batch-size:500}")
+    private int importBatchSize;
+
+    /**
+     * Method to build the category and search indexes in bulk once the application has started,
+     * so the first shop visitors do not have to wait for them
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildCatalogIndexes(){
+        useFacetIndex();
+        useSearchIndex();
+    }
 
     /**
      * Method to save an item into the database
@@ -38,6 +108,18 @@ public class ItemService {
      * @return The ID of the item that has just been saved
      */
     public Long saveItem(Item item){
+        validateItem(item);
+        //After all checks, save the item into database
+        Item newItem = itemRepository.save(item);
+        onItemChanged(newItem);
+        return newItem.getId();
+    }
+
+    /**
+     * Method to check that an item can be saved
+     * @param item - The Item object to check
+     */
+    private void validateItem(Item item){
         //Check the name of the item to make sure it's not empty
         if(item.getItemName().equals("")){
             throw new InvalidItemNameException(item.getItemName());
@@ -50,36 +132,210 @@ public class ItemService {
         if(item.getItemPrice().signum()<=0 ){
             throw new InvalidItemPriceException(item.getItemPrice().toString());
         }
-        //After all checks, save the item into database
-        Item newItem = itemRepository.save(item);
-        return newItem.getId();
     }
 
     /**
-     * Method to get an item by ID if it exists in the database
+     * Method to import many items at once, checking each of them with the same rules as saveItem.
+     * Valid items are inserted with batches of JDBC statements, their IDs are taken from the items ID sequence
+     * with one query per batch. Invalid rows are skipped and reported with their row number.
+     * If a row cannot be read at all, the import stops there and keeps the items read before it.
+     * @param rows - The rows to import, read one by one
+     * @return The ItemImportResult with the number of imported items and the errors of the skipped rows
+     */
+    public ItemImportResult importItems(Iterator<ItemImportRow> rows){
+        ItemImportResult result = new ItemImportResult();
+        List<Item> batch = new ArrayList<>(importBatchSize);
+        List<ItemFacet> facets = new ArrayList<>();
+        List<SearchDocument> documents = new ArrayList<>();
+
+        int rowNumber = 0;
+        while(true){
+            ItemImportRow row;
+            try {
+                if(!rows.hasNext()){
+                    break;
+                }
+                row = rows.next();
+            } catch (RuntimeException e) {
+                result.addError(rowNumber + 1, "The row cannot be read, the import stopped here: " + e.getMessage());
+                break;
+            }
+            rowNumber++;
+
+            try {
+                Item item = toItem(row);
+                validateItem(item);
+                batch.add(item);
+            } catch (RuntimeException e) {
+                result.addError(rowNumber, e.getMessage());
+                continue;
+            }
+            if(batch.size() == importBatchSize){
+                insertBatch(batch, facets, documents);
+                result.addImported(batch.size());
+                batch.clear();
+            }
+        }
+        if(!batch.isEmpty()){
+            insertBatch(batch, facets, documents);
+            result.addImported(batch.size());
+        }
+
+        if(!facets.isEmpty()){
+            onItemsImported(facets, documents);
+        }
+        return result;
+    }
+
+    /**
+     * Method to turn an import row into an Item, without checking it
+     * @param row - The row to convert
+     * @return The new Item
+     */
+    private Item toItem(ItemImportRow row){
+        BigDecimal price;
+        try {
+            price = new BigDecimal(nullToEmpty(row.getItemPrice()).trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidItemPriceException(row.getItemPrice());
+        }
+        String availability = nullToEmpty(row.getAvailability()).trim();
+        if(!availability.isEmpty() && !availability.equalsIgnoreCase("true") && !availability.equalsIgnoreCase("false")){
+            throw new IllegalArgumentException("Item availability " + availability + " is invalid");
+        }
+        return new Item(nullToEmpty(row.getItemName()), nullToEmpty(row.getItemDescription()), nullToEmpty(row.getItemImage()),
+                price, nullToEmpty(row.getCategory()), !availability.equalsIgnoreCase("false"));
+    }
+
+    private String nullToEmpty(String value){
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Method to insert a batch of new items with one batch of JDBC statements.
+     * Hibernate cannot batch inserts of IDENTITY IDs, so the IDs are taken from the sequence of the column first.
+     * @param batch - The items to insert, their IDs are set
+     * @param facets - The List the category index rows of the inserted items are added to
+     * @param documents - The List the search index rows of the inserted items are added to
+     */
+    private void insertBatch(List<Item> batch, List<ItemFacet> facets, List<SearchDocument> documents){
+        List<Long> ids = jdbcTemplate.queryForList(
+                "select nextval(pg_get_serial_sequence('items', 'id')) from generate_series(1, ?)", Long.class, batch.size());
+        for(int i = 0; i < batch.size(); i++){
+            batch.get(i).setId(ids.get(i));
+        }
+
+        Timestamp updatedAt = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate("insert into items (id, itemName, itemDescription, itemImage, itemPrice, category, availability, updatedAt)"
+                        + " values (?, ?, ?, ?, ?, ?, ?, ?)", batch, batch.size(), (statement, item) -> {
+            statement.setLong(1, item.getId());
+            statement.setString(2, item.getItemName());
+            statement.setString(3, item.getItemDescription());
+            statement.setString(4, item.getItemImage());
+            statement.setBigDecimal(5, item.getItemPrice());
+            statement.setString(6, item.getCategory());
+            statement.setBoolean(7, item.isAvailability());
+            statement.setTimestamp(8, updatedAt);
+        });
+
+        for(Item item: batch){
+            facets.add(new ItemFacet(item.getId(), item.getCategory(), item.isAvailability()));
+            documents.add(new SearchDocument(item.getId(), item.getItemName(), item.getCategory(), item.getItemDescription()));
+        }
+    }
+
+    /**
+     * Method to get an item by ID if it exists in the database, with its images, for the item details.
+     * Its carts are not loaded, so the cached item does not go stale when a cart changes.
+     * Callers outside a read-write transaction are served from the catalog cache.
      * @param id - The ID of the item to get
      * @return The Optional object which may contain the item to get
      */
+    @Transactional(readOnly = true)
     public Optional<Item> getItem(Long id){
-        return itemRepository.findById(id);
+        if(!CacheTransactions.canUseCache()){
+            return itemRepository.findById(id);
+        }
+        return Optional.ofNullable(catalogCache.getItem(id, () -> loadItemDetails(id)));
     }
 
     /**
-     * Method to get a list of all items currently in the database
-     * @return A List of all items found
+     * Method to load an item with every association it shows on its details, so it can be used after the transaction
+     * @param id - The ID of the item to load
+     * @return The item, or null if it does not exist
      */
+    private Item loadItemDetails(Long id){
+        return itemRepository.findWithImagesById(id).orElse(null);
+    }
+
+    /**
+     * Method to get a list of all items currently in the database.
+     * Their carts and images are not loaded, so they are only available inside a transaction.
+     * @return A List of all items found, sorted by their ID ascending
+     */
+    @Transactional(readOnly = true)
     public List<Item> getAllItems(){
-        return itemRepository.findAll();
+        return getAllItemsSortedId();
     }
 
     /**
-     * Method to get a list of all items sorted by their ID
+     * Method to get a list of all items sorted by their ID.
+     * Their carts and images are not loaded, so they are only available inside a transaction.
      * @return A List of all items found, sorted by their ID ascending
      */
+    @Transactional(readOnly = true)
     public List<Item> getAllItemsSortedId(){
         return itemRepository.findAll(Sort.by(Sort.Direction.ASC, "id"));
     }
 
+    /**
+     * Method to get the summaries of all items, used to list the whole catalog.
+     * Callers outside a read-write transaction are served from the catalog cache.
+     * @return A List of all item summaries, sorted by their ID ascending
+     */
+    @Transactional(readOnly = true)
+    public List<ItemSummary> getCatalog(){
+        if(!CacheTransactions.canUseCache()){
+            return loadCatalog();
+        }
+        return catalogCache.getCatalog(this::loadCatalog);
+    }
+
+    private List<ItemSummary> loadCatalog(){
+        return em.createQuery(SUMMARY_SELECT + " order by b.id", ItemSummary.class).getResultList();
+    }
+
+    /**
+     * Method to read the items one by one through a database cursor and pass each of them to a consumer.
+     * Rows are fetched in chunks and none of them is kept once it has been consumed,
+     * so memory use stays the same for any catalog size.
+     * @param updatedSince - Only items changed at or after this time are read, or null to read all items
+     * @param consumer - The action to run on each item, in ID order
+     * @return The number of items read
+     */
+    @Transactional(readOnly = true)
+    public int exportItems(Instant updatedSince, Consumer<ItemExport> consumer){
+        String queryStr = "select new com.example.ordersystem.model.ItemExport(b.id, b.itemName, b.itemDescription,"
+                + " b.itemPrice, b.category, b.availability, b.firstImageId, b.updatedAt) from Item b";
+        if(updatedSince != null){
+            queryStr += " where b.updatedAt >= :updatedSince";
+        }
+        @SuppressWarnings("unchecked")
+        Query<ItemExport> query = em.createQuery(queryStr + " order by b.id", ItemExport.class).unwrap(Query.class);
+        if(updatedSince != null){
+            query.setParameter("updatedSince", updatedSince);
+        }
+
+        int count = 0;
+        try(ScrollableResults results = query.setFetchSize(exportFetchSize).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY)){
+            while(results.next()){
+                consumer.accept((ItemExport) results.get(0));
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Method to get the string of an item's image file names
      * @param id - The ID of the item to get images
@@ -95,25 +351,49 @@ public class ItemService {
      * @param id - The ID of the item to be deleted
      */
     public void deleteItem(Long id){
+        //Delete the images of the item first, the contents only they use are deleted from the image store
+        itemImageService.deleteItemImages(id);
         itemRepository.deleteById(id);
+        onItemDeleted(id);
     }
 
     /**
      * Method to change an item's availability status
      * @param id - The ID of the item to be updated
+     * @return The number of carts the item has been removed from, 0 if the item has become available
      */
-    public void changeAvailability(Long id){
-        Item item = getItem(id).get();
+    public int changeAvailability(Long id){
+        Item item = itemRepository.findById(id).get();
         //Change the item's availability status to the opposite of what it currently is
         item.setAvailability(!item.isAvailability());
+        int removedCarts = 0;
         if(!item.isAvailability()){
-            //If the item becomes unavailable, delete it from all users' carts
+            //If the item becomes unavailable, delete it from all users' carts with one statement, without loading them,
             //so the users cannot check out any cart with that item
-            Set<Cart> itemCarts = item.getCarts();
-            if(itemCarts!=null){
-                cartRepository.deleteAll(itemCarts);
+            removedCarts = cartRepository.deleteByItemId(id);
+            cartSummaryCache.itemRemovedEverywhere(id);
+        }
+        onItemChanged(item);
+        return removedCarts;
+    }
+
+    /**
+     * Method to get the categories to show in the shop filter
+     * @return The List of all categories in the order they first appeared, starting with "All"
+     */
+    @Transactional(readOnly = true)
+    public List<String> getCategoryList(){
+        List<String> categories = new ArrayList<>();
+        categories.add("All");
+        if(useFacetIndex()){
+            for(CategoryFacet facet: facetIndex.getFacets()){
+                categories.add(facet.getCategory());
             }
+        }else{
+            categories.addAll(em.createQuery("select b.category from Item b group by b.category order by min(b.id)", String.class)
+                    .getResultList());
         }
+        return new ArrayList<>(new LinkedHashSet<>(categories));
     }
 
     /**
@@ -122,19 +402,126 @@ public class ItemService {
      * @param searchField - The field to search the items by
      * @return The int number of items which satisfy the conditions
      */
+    @Transactional(readOnly = true)
     public int findNumOfSearchedItems(String filterField, String searchField) {
-        String queryStr = "";
+        Integer indexedCount = countIndexedItems(filterField, searchField);
+        if(indexedCount != null){
+            return indexedCount;
+        }
 
-        if(!filterField.equals("All")) {
-            queryStr = "select count(b) from Item b";
+        Map<String, Object> parameters = new HashMap<>();
+        String where = getQueryString(filterField, searchField, parameters);
+        if(where == null){
+            return 0;
+        }
+        String queryStr = "select count(b) from Item b" + where;
+        TypedQuery<Long> query = em.createQuery(queryStr, Long.class);
+        parameters.forEach(query::setParameter);
+        return query.getSingleResult().intValue();
+    }
 
-        } else {
-            queryStr = "select count(*) from Item b";
+    /**
+     * Method to get the number of items of a category which satisfy the conditions from the in-memory indexes
+     * @param filterField - The field to filter the items by
+     * @param searchField - The field to search the items by
+     * @return The number of items which satisfy the conditions, or null if the indexes cannot be used by the caller
+     */
+    private Integer countIndexedItems(String filterField, String searchField) {
+        //Without a search term the count is already known by the category index
+        if(searchField.equals("")){
+            if(!useFacetIndex()){
+                return null;
+            }
+            return filterField.equals("All") ? facetIndex.countAllItems() : facetIndex.countItems(filterField);
+        }
+        //With a search term the search index knows every match
+        List<Long> searchedIds = findSearchedIds(filterField, searchField);
+        return searchedIds == null ? null : searchedIds.size();
+    }
 
+    /**
+     * Method to get everything the Shop page lists in a single database round trip:
+     * the page of filtered, searched and sorted items, and the number of items matching the filter and search.
+     * When the in-memory indexes can count the items, only the page itself is read from the database,
+     * by its cursor if there is one. Otherwise the page is read by its index with a windowed count of the matching items.
+     * A page past the last page is replaced by the first page.
+     * @param cursor - The encoded PageCursor of the page to get, or an empty String to use the page number
+     * @param page - The number of the page to get, starting from 1
+     * @param pageSize - The size of a single page
+     * @param filterField - The field by which the items will be filtered
+     * @param sortField - The field by which the items will be sorted
+     * @param searchField - The field by which the items will be searched
+     * @return The ItemPage holding the items of the page, the total number of matching items and the page number
+     */
+    @Transactional(readOnly = true)
+    public ItemPage findShopPage(String cursor, int page, int pageSize, String filterField, String sortField, String searchField) {
+        if(page < 1){
+            page = 1;
+        }
+        Integer totalItems = countIndexedItems(filterField, searchField);
+        if(totalItems == null){
+            return findCountedPage(page, pageSize, filterField, sortField, searchField);
         }
-        queryStr += getQueryString(filterField, searchField);
 
-        return ((Number) em.createQuery(queryStr).getSingleResult()).intValue();
+        if(page > 1 && (page - 1) * pageSize >= totalItems){
+            page = 1;
+            cursor = "";
+        }
+        // Seek to the page with the cursor if there is one, otherwise count rows from the start
+        ItemPage itemPage = findPageByCursor(cursor, pageSize, filterField, sortField, searchField);
+        if(itemPage == null || itemPage.getItems().isEmpty()){
+            itemPage = findPage((page - 1) * pageSize, pageSize, filterField, sortField, searchField);
+        }
+        return itemPage.withTotal(totalItems, page);
+    }
+
+    /**
+     * Method to get a page of filtered, searched and sorted items by its page number,
+     * counting the matching items with a window function in the same query
+     * @param page - The number of the page to get, starting from 1
+     * @param pageSize - The size of a single page
+     * @param filterField - The field by which the items will be filtered
+     * @param sortField - The field by which the items will be sorted
+     * @param searchField - The field by which the items will be searched
+     * @return The ItemPage holding the items of the page, the total number of matching items and the page number
+     */
+    private ItemPage findCountedPage(int page, int pageSize, String filterField, String sortField, String searchField) {
+        Map<String, Object> parameters = new HashMap<>();
+        String where = getQueryString(filterField, searchField, parameters);
+        if(where == null){
+            return new ItemPage(new ArrayList<>(), null, null, 0, 1);
+        }
+        //The count is taken over every matching row before the limit is applied
+        String queryStr = "select b.id, b.itemName as item_name, b.itemPrice as item_price, b.category, b.availability,"
+                + " (select min(i.id) from itemimages i where i.item_id = b.id) as first_image_id,"
+                + " count(*) over() as total_items from items b" + where + getOrderByString(sortField);
+        @SuppressWarnings("unchecked")
+        NativeQuery<Object[]> query = em.createNativeQuery(queryStr).unwrap(NativeQuery.class)
+                .addScalar("id", StandardBasicTypes.LONG)
+                .addScalar("item_name", StandardBasicTypes.STRING)
+                .addScalar("item_price", StandardBasicTypes.BIG_DECIMAL)
+                .addScalar("category", StandardBasicTypes.STRING)
+                .addScalar("availability", StandardBasicTypes.BOOLEAN)
+                .addScalar("first_image_id", StandardBasicTypes.LONG)
+                .addScalar("total_items", StandardBasicTypes.LONG);
+        parameters.forEach(query::setParameter);
+
+        List<Object[]> rows = query.setFirstResult((page - 1) * pageSize).setMaxResults(pageSize).getResultList();
+        //A page past the last page has no rows to carry the count, so go back to the first page
+        if(rows.isEmpty() && page > 1){
+            page = 1;
+            rows = query.setFirstResult(0).getResultList();
+        }
+
+        List<ItemSummary> items = new ArrayList<>(rows.size());
+        for(Object[] row: rows){
+            items.add(new ItemSummary((Long) row[0], (String) row[1], (BigDecimal) row[2], (String) row[3],
+                    (Boolean) row[4], (Long) row[5]));
+        }
+        int totalItems = rows.isEmpty() ? 0 : ((Long) rows.get(0)[6]).intValue();
+        int startIndex = (page - 1) * pageSize;
+        return toItemPage(items, sortField, startIndex + items.size() < totalItems, startIndex > 0)
+                .withTotal(totalItems, page);
     }
 
     /**
@@ -146,50 +533,327 @@ public class ItemService {
      * @param searchField - The field by which the items will be searched
      * @return The List of all items which is organized and ordered according to the conditions
      */
-    public List<Item> findListPaging(int startIndex, int pageSize, String filterField, String sortField, String searchField) {
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findListPaging(int startIndex, int pageSize, String filterField, String sortField, String searchField) {
+        if(sortField.equals("relevance")){
+            List<Long> searchedIds = findSearchedIds(filterField, searchField);
+            if(searchedIds != null){
+                return findRankedPage(searchedIds, startIndex, pageSize);
+            }
+        }
 
-        String direction = "";
-        String queryStr = "select b from Item b" + getQueryString(filterField, searchField);
+        Map<String, Object> parameters = new HashMap<>();
+        String where = getQueryString(filterField, searchField, parameters);
+        if(where == null){
+            return new ArrayList<>();
+        }
+        TypedQuery<ItemSummary> query = em.createQuery(SUMMARY_SELECT + where + getOrderByString(sortField), ItemSummary.class)
+                .setFirstResult(startIndex)
+                .setMaxResults(pageSize);
+        parameters.forEach(query::setParameter);
+        return query.getResultList();
+    }
 
-        // Sort by different fields
-        if (sortField.equals("name")) sortField = "itemName";
-        if (sortField.equals("priceHTL")) {
-            sortField = "itemPrice";
-            direction = " desc";
-        } else if(sortField.equals("priceLTH")) {
-            sortField = "itemPrice";
-            direction = " asc";
+    /**
+     * Method to get a page of items in the order ranked by the search index
+     * @param rankedIds - The IDs of all matching items, best match first
+     * @param startIndex - The starting index of the page
+     * @param pageSize - The size of a single page
+     * @return The List of the items of the page, best match first
+     */
+    private List<ItemSummary> findRankedPage(List<Long> rankedIds, int startIndex, int pageSize){
+        if(startIndex >= rankedIds.size()){
+            return new ArrayList<>();
+        }
+        List<Long> pageIds = rankedIds.subList(startIndex, Math.min(rankedIds.size(), startIndex + pageSize));
+        Map<Long, ItemSummary> itemsById = new HashMap<>();
+        for(ItemSummary item: em.createQuery(SUMMARY_SELECT + " where b.id in (:ids)", ItemSummary.class)
+                .setParameter("ids", pageIds)
+                .getResultList()){
+            itemsById.put(item.getId(), item);
         }
-        queryStr += " order by b." + sortField + direction;
+        List<ItemSummary> items = new ArrayList<>(pageIds.size());
+        for(Long id: pageIds){
+            ItemSummary item = itemsById.get(id);
+            if(item != null){
+                items.add(item);
+            }
+        }
+        return items;
+    }
 
-        return em.createQuery(queryStr, Item.class)
-                .setFirstResult(startIndex)
-                .setMaxResults(pageSize)
-                .getResultList();
+    /**
+     * Method to get a page of filtered, searched and sorted items by its starting index,
+     * along with the cursors to its neighbouring pages
+     * @param startIndex - The starting index of the page
+     * @param pageSize - The size of a single page
+     * @param filterField - The field by which the items will be filtered
+     * @param sortField - The field by which the items will be sorted
+     * @param searchField - The field by which the items will be searched
+     * @return The ItemPage holding the items of the page
+     */
+    @Transactional(readOnly = true)
+    public ItemPage findPage(int startIndex, int pageSize, String filterField, String sortField, String searchField) {
+        //Get one extra item to know whether there is a next page
+        List<ItemSummary> items = new ArrayList<>(findListPaging(startIndex, pageSize + 1, filterField, sortField, searchField));
+        boolean hasNext = items.size() > pageSize;
+        if(hasNext){
+            items.remove(pageSize);
+        }
+        return toItemPage(items, sortField, hasNext, startIndex > 0);
+    }
+
+    /**
+     * Method to get the page of filtered, searched and sorted items next to a keyset cursor.
+     * The query seeks straight to the (sort key, ID) pair stored in the cursor,
+     * so it costs the same on any page and is not shifted by items added to earlier pages.
+     * @param cursor - The encoded PageCursor of the page to get
+     * @param pageSize - The size of a single page
+     * @param filterField - The field by which the items will be filtered
+     * @param sortField - The field by which the items will be sorted
+     * @param searchField - The field by which the items will be searched
+     * @return The ItemPage holding the items of the page, or null if the cursor is invalid or was made for another sort
+     */
+    @Transactional(readOnly = true)
+    public ItemPage findPageByCursor(String cursor, int pageSize, String filterField, String sortField, String searchField) {
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        if(pageCursor == null || !pageCursor.getSortField().equals(sortField)){
+            return null;
+        }
+        boolean forward = pageCursor.isForward();
+        String sortColumn = getSortColumn(sortField);
+        //Walking backwards flips every comparison and ordering, the items are put back in order afterwards
+        boolean keyAscending = sortField.equals("priceHTL") != forward;
+        String keyOperator = keyAscending ? " > " : " < ";
+        String idOperator = forward ? " > " : " < ";
+
+        //The search rank cannot be used as a keyset, those pages are only reached by their index
+        if(sortField.equals("relevance")){
+            return null;
+        }
+        Map<String, Object> parameters = new HashMap<>();
+        String where = getQueryString(filterField, searchField, parameters);
+        if(where == null){
+            return new ItemPage(new ArrayList<>(), null, null);
+        }
+        String queryStr = SUMMARY_SELECT + where + (where.isEmpty() ? " where " : " and ");
+        if(sortColumn.equals("id")){
+            queryStr += "b.id" + idOperator + ":id order by b.id " + (forward ? "asc" : "desc");
+        }else{
+            queryStr += "(b." + sortColumn + keyOperator + ":key or (b." + sortColumn + " = :key and b.id" + idOperator + ":id))"
+                    + " order by b." + sortColumn + (keyAscending ? " asc" : " desc") + ", b.id " + (forward ? "asc" : "desc");
+        }
+
+        TypedQuery<ItemSummary> query = em.createQuery(queryStr, ItemSummary.class)
+                .setParameter("id", pageCursor.getId())
+                .setMaxResults(pageSize + 1);
+        if(!sortColumn.equals("id")){
+            query.setParameter("key", pageCursor.getKeyValue());
+        }
+        parameters.forEach(query::setParameter);
+        List<ItemSummary> items = new ArrayList<>(query.getResultList());
+
+        //The extra item tells whether there is another page further in the walking direction
+        boolean hasMore = items.size() > pageSize;
+        if(hasMore){
+            items.remove(pageSize);
+        }
+        if(forward){
+            return toItemPage(items, sortField, hasMore, true);
+        }
+        Collections.reverse(items);
+        return toItemPage(items, sortField, true, hasMore);
+    }
+
+    /**
+     * Method to build an ItemPage with cursors pointing past its first and last items
+     */
+    private ItemPage toItemPage(List<ItemSummary> items, String sortField, boolean hasNext, boolean hasPrev){
+        if(items.isEmpty() || sortField.equals("relevance")){
+            return new ItemPage(items, null, null);
+        }
+        String nextCursor = hasNext ? PageCursor.after(sortField, items.get(items.size() - 1)).encode() : null;
+        String prevCursor = hasPrev ? PageCursor.before(sortField, items.get(0)).encode() : null;
+        return new ItemPage(items, nextCursor, prevCursor);
     }
 
     /**
-     * Method to get the string to query items in the database
+     * Method to get the Item field that a sort field orders by
+     * @param sortField - The sort field selected on the Shop page
+     * @return The name of the Item field
+     */
+    private String getSortColumn(String sortField){
+        switch (sortField) {
+            case "name":
+                return "itemName";
+            case "priceHTL":
+            case "priceLTH":
+                return "itemPrice";
+            default:
+                return "id";
+        }
+    }
+
+    /**
+     * Method to get the order by clause of a sort field.
+     * Items with the same sort key are ordered by ID so every page has a stable position.
+     * @param sortField - The sort field selected on the Shop page
+     * @return The order by String to append to the query
+     */
+    private String getOrderByString(String sortField){
+        String sortColumn = getSortColumn(sortField);
+        if(sortColumn.equals("id")){
+            return " order by b.id";
+        }
+        return " order by b." + sortColumn + (sortField.equals("priceHTL") ? " desc" : " asc") + ", b.id";
+    }
+
+    /**
+     * Method to get the where clause to query items in the database.
+     * The filter and search values are bound as parameters, never written into the query itself.
+     * The clause is valid both in JPQL and in SQL on the items table aliased as b.
      * @param filterField - The field by which items will be filtered
      * @param searchField - The field by which items will be searched
-     * @return The query String to query the database
+     * @param parameters - The Map the query parameters are added to
+     * @return The where clause String to append to the query, or null if no item can match the search
      */
-    public String getQueryString(String filterField, String searchField) {
-        String queryStr = "";
+    private String getQueryString(String filterField, String searchField, Map<String, Object> parameters) {
+        List<String> conditions = new ArrayList<>();
 
         // Set query for filter field
         if(!filterField.equals("All")) {
-            queryStr += " where b.category like '" + filterField + "'";
-            if(!searchField.equals(""))
-                queryStr +=" and ";
+            conditions.add("b.category = :category");
+            parameters.put("category", filterField);
         }
 
         // Set query for search field
         if(!searchField.equals("")) {
-            if(filterField.equals("All")) queryStr += " where";
-            queryStr += " lower(b.itemName) like lower('%" + searchField + "%')";
+            List<Long> searchedIds = findSearchedIds(filterField, searchField);
+            if(searchedIds != null && searchedIds.isEmpty()){
+                return null;
+            }
+            if(searchedIds != null && searchedIds.size() <= MAX_SEARCH_IDS){
+                conditions.add("b.id in (:searchIds)");
+                parameters.put("searchIds", searchedIds);
+            }else{
+                conditions.add("lower(b.itemName) like :searchPattern escape '!'");
+                parameters.put("searchPattern", "%" + escapeLike(searchField.toLowerCase()) + "%");
+            }
         }
 
-        return queryStr;
+        return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+    }
+
+    /**
+     * Method to escape the wildcards of a search term so it is matched literally by like
+     * @param term - The search term
+     * @return The term with '!', '%' and '_' escaped by '!'
+     */
+    private String escapeLike(String term){
+        return term.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * Method to get the IDs of the items matching a search term from the search index
+     * @param filterField - The category the items must be in, or "All"
+     * @param searchField - The search term
+     * @return The List of matching item IDs with the best match first,
+     * or null if there is no search term or the index cannot be used by the caller
+     */
+    private List<Long> findSearchedIds(String filterField, String searchField){
+        if(searchField.equals("") || !useSearchIndex()){
+            return null;
+        }
+        return searchIndex.search(searchField, filterField.equals("All") ? null : filterField);
+    }
+
+    /**
+     * Method to update the catalog cache, versions and indexes after an item has been saved or changed
+     * @param item - The item in its new state
+     */
+    private void onItemChanged(Item item){
+        catalogCache.invalidate(item.getId());
+        catalogVersions.itemChanged(item.getId());
+        //The carts holding the item show its new price
+        cartSummaryCache.priceChanged(item.getId(), item.getItemPrice());
+        ItemFacet facet = new ItemFacet(item.getId(), item.getCategory(), item.isAvailability());
+        SearchDocument document = new SearchDocument(item.getId(), item.getItemName(), item.getCategory(), item.getItemDescription());
+        CacheTransactions.afterCommit(() -> {
+            facetIndex.put(facet);
+            searchIndex.put(document);
+        });
+    }
+
+    /**
+     * Method to update the catalog cache, versions and indexes after an item has been deleted
+     * @param id - The ID of the deleted item
+     */
+    private void onItemDeleted(Long id){
+        catalogCache.invalidate(id);
+        catalogVersions.itemChanged(id);
+        //The carts of the item are deleted with it
+        cartSummaryCache.itemRemovedEverywhere(id);
+        CacheTransactions.afterCommit(() -> {
+            facetIndex.remove(id);
+            searchIndex.remove(id);
+        });
+    }
+
+    /**
+     * Method to update the catalog cache, versions and indexes after items have been imported
+     * @param facets - The category index rows of the imported items
+     * @param documents - The search index rows of the imported items
+     */
+    private void onItemsImported(List<ItemFacet> facets, List<SearchDocument> documents){
+        catalogCache.invalidateAll();
+        List<Long> ids = new ArrayList<>(facets.size());
+        for(ItemFacet facet: facets){
+            ids.add(facet.getId());
+        }
+        catalogVersions.itemsChanged(ids);
+        CacheTransactions.afterCommit(() -> {
+            for(ItemFacet facet: facets){
+                facetIndex.put(facet);
+            }
+            for(SearchDocument document: documents){
+                searchIndex.put(document);
+            }
+        });
+    }
+
+    /**
+     * Method to check whether the category index can answer the current caller, building it on first use
+     * @return True if the index is loaded and the caller is not inside a read-write transaction
+     */
+    private boolean useFacetIndex(){
+        if(!CacheTransactions.canUseCache()){
+            return false;
+        }
+        if(facetIndex.isLoaded()){
+            return true;
+        }
+        long modCount = facetIndex.getModCount();
+        List<ItemFacet> items = em.createQuery(
+                "select new com.example.ordersystem.index.ItemFacet(b.id, b.category, b.availability) from Item b", ItemFacet.class)
+                .getResultList();
+        return facetIndex.load(items, modCount);
+    }
+
+    /**
+     * Method to check whether the search index can answer the current caller, building it on first use
+     * @return True if the index is loaded and the caller is not inside a read-write transaction
+     */
+    private boolean useSearchIndex(){
+        if(!CacheTransactions.canUseCache()){
+            return false;
+        }
+        if(searchIndex.isLoaded()){
+            return true;
+        }
+        long modCount = searchIndex.getModCount();
+        List<SearchDocument> documents = em.createQuery(
+                "select new com.example.ordersystem.index.SearchDocument(b.id, b.itemName, b.category, b.itemDescription) from Item b", SearchDocument.class)
+                .getResultList();
+        return searchIndex.load(documents, modCount);
     }
 }
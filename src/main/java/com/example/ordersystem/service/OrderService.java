@@ -1,5 +1,6 @@
 package com.example.ordersystem.service;
 
+import com.example.ordersystem.cache.CartSummaryCache;
 import com.example.ordersystem.model.Account;
 import com.example.ordersystem.model.Cart;
 import com.example.ordersystem.model.Item;
@@ -33,6 +34,8 @@ public class OrderService {
     private OrderRepository orderRepository;
     @Autowired
     private EmailService emailService;
+    @Autowired
+    private CartSummaryCache cartSummaryCache;
 
     @Autowired
     public OrderService(@NonNull @Lazy CartRepository cartRepository, @NonNull @Lazy OrderRepository orderRepository) {
@@ -41,13 +44,14 @@ public class OrderService {
     }
 
     /**
-     * Method to create a new order for a specific user and save it into database
+     * Method to create a new order for a specific user and save it into database,
+     * then empty the user's cart in the same transaction
      * @param user - The user Account to whom the order belongs
      * @return The newly created Order object
      */
     public Order addOrder(Account user) {
-        //Get all current carts of the specified user account
-        List<Cart> carts = cartRepository.findByAccount(user);
+        //Get all current carts of the specified user account, locked so their amounts cannot change before they are deleted
+        List<Cart> carts = cartRepository.findByAccountIdForUpdate(user.getId());
         String items = "";
         float tmp = 0;
         //Create an iterator to iterate through the cart list
@@ -74,6 +78,10 @@ public class OrderService {
         order.setItems(items);
         //Save the new order into database
         orderRepository.save(order);
+        //Empty the cart after the user checked out, with one statement for the carts in the order.
+        // A cart added by another request meanwhile is not in the order, so it is kept
+        cartRepository.deleteAllInBatch(carts);
+        cartSummaryCache.invalidate(user.getId());
         //Send an email to the user's email address to confirm the creation of the order
         emailService.sendEmail("created",order);
         return order;
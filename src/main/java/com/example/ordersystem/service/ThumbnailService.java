@@ -0,0 +1,359 @@
+package com.example.ordersystem.service;
+
+import com.example.ordersystem.cache.LruCache;
+import com.example.ordersystem.model.ItemImage;
+import com.example.ordersystem.storage.ImageStore;
+import com.example.ordersystem.storage.StagedImage;
+import com.example.ordersystem.storage.StoredContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class makes smaller copies of item images for the pages that do not need them at full size.
+ * Each image gets one thumbnail per configured width, made in the background after it is uploaded
+ * by a small pool of workers, and made again on the first request if it is missing.
+ * Thumbnails are kept in the image store next to the original content, so images with the same content share them.
+ */
+@Service
+public class ThumbnailService {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    @Autowired
+    private ImageStore imageStore;
+
+    //Widths of the thumbnails in pixels, from the smallest
+    private final int[] widths;
+    private final long waitMillis;
+    private final long retryAfterMillis;
+    private final ThreadPoolExecutor executor;
+
+    //Thumbnails being made, so the same thumbnail is never made twice at once
+    private final Map<String, FutureTask<Void>> inProgress = new ConcurrentHashMap<>();
+    //Time each thumbnail failed to be made, the original image is sent instead of trying again on every request.
+    //Only the latest failures are kept, and a thumbnail is tried again once its failure is old enough.
+    private final LruCache<String, Long> failed;
+
+    public ThumbnailService(@Value("${app.thumbnails.widths:200,400,800}") int[] widths,
+                            @Value("${app.thumbnails.threads:2}") int threads,
+                            @Value("${app.thumbnails.queue-size:200}") int queueSize,
+                            @Value("${app.thumbnails.wait-millis:2000}") long waitMillis,
+                            @Value("${app.thumbnails.retry-after-millis:600000}") long retryAfterMillis,
+                            @Value("${app.thumbnails.max-failed:1000}") int maxFailed){
+        this.widths = widths.clone();
+        Arrays.sort(this.widths);
+        this.waitMillis = waitMillis;
+        this.retryAfterMillis = retryAfterMillis;
+        this.failed = new LruCache<>(maxFailed);
+        //Decoding images takes a lot of CPU and memory, so only a few are decoded at once.
+        //When the queue is full new uploads get no thumbnails in advance, they are made on their first request instead.
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    /**
+     * Method to start making all thumbnails of an image content in the background
+     * @param hash - The SHA-256 of the content
+     * @param contentType - The MIME type of the content
+     */
+    public void makeThumbnails(String hash, String contentType){
+        for(int width: widths){
+            submit(hash, contentType, width);
+        }
+    }
+
+    /**
+     * Method to get the thumbnail of an item image to send for a requested width.
+     * The smallest thumbnail at least as wide as requested is used. A missing thumbnail is made first,
+     * waiting for it only for a short time.
+     * @param itemImage - The item image
+     * @param requestedWidth - The width the client asked for, in pixels
+     * @return The thumbnail, or null if the original image has to be sent
+     */
+    public StoredContent getThumbnail(ItemImage itemImage, int requestedWidth){
+        Integer width = chooseWidth(requestedWidth);
+        if(width == null || itemImage.getContentHash() == null){
+            return null;
+        }
+        String key = ImageStore.thumbnailKey(itemImage.getContentHash(), width);
+        if(!imageStore.contains(key)){
+            FutureTask<Void> task = submit(itemImage.getContentHash(), itemImage.getContentType(), width);
+            if(task == null){
+                return null;
+            }
+            try {
+                task.get(waitMillis, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            catch (ExecutionException | TimeoutException e) {
+                return null;
+            }
+        }
+        try {
+            return new StoredContent(key, thumbnailType(itemImage.getContentType()), imageStore.size(key));
+        }
+        catch (IOException e) {
+            //The thumbnail failed to be made
+            return null;
+        }
+    }
+
+    /**
+     * Method to choose the thumbnail width for a requested width
+     * @param requestedWidth - The width the client asked for, in pixels
+     * @return The smallest thumbnail width at least as wide, or null if no thumbnail is wide enough
+     */
+    public Integer chooseWidth(int requestedWidth){
+        for(int width: widths){
+            if(width >= requestedWidth){
+                return width;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to queue a thumbnail to be made, unless it exists, is being made or failed a short time ago
+     * @param hash - The SHA-256 of the original content
+     * @param contentType - The MIME type of the original content
+     * @param width - The width of the thumbnail
+     * @return The task making the thumbnail, or null if it will not be made
+     */
+    private FutureTask<Void> submit(String hash, String contentType, int width){
+        String key = ImageStore.thumbnailKey(hash, width);
+        Long failedAt = failed.get(key);
+        if(failedAt != null){
+            if(System.currentTimeMillis() - failedAt < retryAfterMillis){
+                return null;
+            }
+            failed.remove(key, failedAt);
+        }
+        FutureTask<Void> created = new FutureTask<>(() -> {
+            try {
+                if(!imageStore.contains(key)){
+                    storeThumbnail(hash, contentType, width, key);
+                    //The content may have been deleted while its thumbnail was made, which would leave the thumbnail behind
+                    if(!imageStore.contains(hash)){
+                        imageStore.deleteThumbnail(key);
+                    }
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                failed.put(key, System.currentTimeMillis());
+                log.warn("Could not make thumbnail {}: {}", key, e.getMessage());
+                throw e;
+            }
+            finally {
+                inProgress.remove(key);
+            }
+            return null;
+        });
+        FutureTask<Void> task = inProgress.putIfAbsent(key, created);
+        if(task != null){
+            return task;
+        }
+        try {
+            executor.execute(created);
+        }
+        catch (RejectedExecutionException e) {
+            inProgress.remove(key, created);
+            return null;
+        }
+        return created;
+    }
+
+    /**
+     * Method to make a thumbnail of a content and save it into the image store
+     * @param hash - The SHA-256 of the original content
+     * @param contentType - The MIME type of the original content
+     * @param width - The width of the thumbnail
+     * @param key - The key of the thumbnail in the image store
+     * @throws IOException - If the content cannot be read or is not an image javax.imageio can decode
+     */
+    private void storeThumbnail(String hash, String contentType, int width, String key) throws IOException {
+        BufferedImage thumbnail;
+        try (InputStream content = imageStore.open(hash)) {
+            thumbnail = scale(content, width, isOpaque(contentType));
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if(isOpaque(contentType)){
+            writeJpeg(thumbnail, encoded, 0.82f, false);
+        }else{
+            ImageIO.write(thumbnail, "png", encoded);
+        }
+
+        StagedImage staged = imageStore.stage(new ByteArrayInputStream(encoded.toByteArray()));
+        try {
+            imageStore.commit(staged, key);
+        }
+        finally {
+            imageStore.discard(staged);
+        }
+    }
+
+    /**
+     * Method to read the size of an image from its header, without decoding it
+     * @param content - The encoded image
+     * @return The width and height of the image in pixels
+     * @throws IOException - If the image cannot be read or is not an image javax.imageio can read
+     */
+    static Dimension readDimensions(InputStream content) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()){
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Method to decode an image and scale it down to a width, keeping its aspect ratio.
+     * Images are never scaled up.
+     * @param content - The encoded image
+     * @param width - The maximum width in pixels
+     * @param opaque - Whether the thumbnail has no transparency
+     * @return The scaled image
+     * @throws IOException - If the image cannot be decoded
+     */
+    static BufferedImage scale(InputStream content, int width, boolean opaque) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()){
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                //Decode only every n-th pixel of large images, so a photo is never decoded at its full size.
+                //Twice the width is kept so the final scaling can still smooth the image.
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, sourceWidth / (width * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage source = reader.read(0, param);
+
+                int targetWidth = Math.min(width, sourceWidth);
+                int targetHeight = Math.max(1, (int) Math.round((double) sourceHeight * targetWidth / sourceWidth));
+                BufferedImage target = new BufferedImage(targetWidth, targetHeight,
+                        opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+                Graphics2D graphics = target.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                    if(opaque){
+                        graphics.setColor(Color.WHITE);
+                        graphics.fillRect(0, 0, targetWidth, targetHeight);
+                    }
+                    graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+                }
+                finally {
+                    graphics.dispose();
+                }
+                return target;
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Method to encode an image as JPEG without any metadata
+     * @param image - The image, without transparency
+     * @param out - The stream to write the JPEG to
+     * @param quality - The compression quality, from 0 to 1
+     * @param progressive - Whether the JPEG is progressive, so browsers can show a blurry image before all of it arrives
+     * @throws IOException - If the image cannot be written
+     */
+    static void writeJpeg(BufferedImage image, OutputStream out, float quality, boolean progressive) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            if(progressive){
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Method to check whether the thumbnails of an image are saved as JPEG, which has no transparency
+     * @param contentType - The MIME type of the original image
+     * @return False for PNG and GIF images, which may be transparent and get PNG thumbnails
+     */
+    private static boolean isOpaque(String contentType){
+        return !"image/png".equals(contentType) && !"image/gif".equals(contentType);
+    }
+
+    /**
+     * Method to get the MIME type of the thumbnails of an image
+     * @param contentType - The MIME type of the original image
+     * @return The MIME type of its thumbnails
+     */
+    static String thumbnailType(String contentType){
+        return isOpaque(contentType) ? "image/jpeg" : "image/png";
+    }
+}
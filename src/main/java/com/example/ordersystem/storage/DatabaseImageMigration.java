@@ -0,0 +1,97 @@
+package com.example.ordersystem.storage;
+
+import com.example.ordersystem.service.ItemImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * This class copies the contents of item images saved in the database, before the image store was used, into the store.
+ * Each image is copied in its own transaction, so a failure leaves the images copied so far in the store
+ * and the run can be repeated. Both steps are off by default and run once the application has started when enabled:
+ * the copy, then the cleanup, which removes the database copy of the images whose content is found in the store.
+ * The cleanup should only be enabled once the store is on a disk that outlives a restart.
+ */
+@Component
+public class DatabaseImageMigration {
+    private static final Logger log = LoggerFactory.getLogger(DatabaseImageMigration.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ItemImageService itemImageService;
+    @Value("${app.image-store.migrate-on-startup:false}")
+    private boolean migrateOnStartup;
+    @Value("${app.image-store.clean-up-database-images:false}")
+    private boolean cleanUpOnStartup;
+
+    /**
+     * Method to move the images still saved in the database into the image store when the application starts
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(){
+        if(migrateOnStartup){
+            migrate();
+        }
+        if(cleanUpOnStartup){
+            cleanUp();
+        }
+    }
+
+    /**
+     * Method to check whether the item images table still has the column of the images saved in the database
+     * @return True if the column exists
+     */
+    private boolean hasImageColumn(){
+        //Databases created after the image store was added have no image column
+        Integer columns = jdbcTemplate.queryForObject("select count(*) from information_schema.columns " +
+                "where table_name = 'itemimages' and column_name = 'image'", Integer.class);
+        return columns != null && columns > 0;
+    }
+
+    /**
+     * Method to copy all images saved in the database and not in the image store yet into the store
+     * @return The number of images that have been copied
+     */
+    public int migrate(){
+        if(!hasImageColumn()){
+            return 0;
+        }
+        List<Long> ids = jdbcTemplate.queryForList("select id from itemimages " +
+                "where image is not null and contentHash is null order by id", Long.class);
+        for(Long id: ids){
+            itemImageService.moveDatabaseImage(id);
+        }
+        if(!ids.isEmpty()){
+            log.info("Copied {} item images from the database into the image store", ids.size());
+        }
+        return ids.size();
+    }
+
+    /**
+     * Method to remove the database copy of the images that have been copied into the image store.
+     * An image whose content is missing from the store keeps its database copy.
+     * @return The number of images whose database copy has been removed
+     */
+    public int cleanUp(){
+        if(!hasImageColumn()){
+            return 0;
+        }
+        List<Long> ids = jdbcTemplate.queryForList("select id from itemimages " +
+                "where image is not null and contentHash is not null order by id", Long.class);
+        int removed = 0;
+        for(Long id: ids){
+            if(itemImageService.dropDatabaseImage(id)){
+                removed++;
+            }
+        }
+        return removed;
+    }
+}
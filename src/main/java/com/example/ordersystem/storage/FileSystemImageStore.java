@@ -0,0 +1,258 @@
+package com.example.ordersystem.storage;
+
+import com.example.ordersystem.cache.LruCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.regex.Pattern;
+
+/**
+ * This class stores image contents as files in a local directory, one file per SHA-256.
+ * A content with hash "abcdef..." is kept at ab/cd/abcdef..., so no directory grows too large,
+ * and its thumbnails are kept next to it, at ab/cd/abcdef...-w400 for example.
+ * New contents are first written into the "tmp" directory, then moved into place in one step,
+ * so readers never see a partly written file.
+ * Contents are sent with FileChannel.transferTo, and the channels of the most recently sent contents are kept open.
+ */
+@Component
+public class FileSystemImageStore implements ImageStore {
+    private static final Logger log = LoggerFactory.getLogger(FileSystemImageStore.class);
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}(-w[0-9]{1,5})?");
+    private static final Pattern THUMBNAIL_KEY = Pattern.compile("[0-9a-f]{64}-w[0-9]{1,5}");
+
+    private final Path root;
+    private final Path staging;
+    //Channels are only read at explicit positions, so one channel can be shared by every request for the content
+    private final LruCache<String, FileChannel> openFiles;
+
+    public FileSystemImageStore(@Value("${app.image-store.directory:image-store}") String directory,
+                                @Value("${app.image-store.max-open-files:64}") int maxOpenFiles) {
+        this.root = Paths.get(directory).toAbsolutePath();
+        this.staging = root.resolve("tmp");
+        this.openFiles = new LruCache<>(maxOpenFiles, FileSystemImageStore::close);
+    }
+
+    @Override
+    public StagedImage stage(InputStream content) throws IOException {
+        Files.createDirectories(staging);
+        Path file = Files.createTempFile(staging, "upload-", ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            long size = Files.copy(new DigestInputStream(content, digest), file, StandardCopyOption.REPLACE_EXISTING);
+            return new StagedImage(toHex(digest.digest()), size, file);
+        }
+        catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    @Override
+    public void commit(StagedImage image, String key) throws IOException {
+        Path target = pathOf(key);
+        if(Files.exists(target)){
+            //The content is stored already
+            Files.deleteIfExists(image.getFile());
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(image.getFile(), target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (FileAlreadyExistsException e) {
+            //Another upload of the content got there first
+            Files.deleteIfExists(image.getFile());
+        }
+    }
+
+    @Override
+    public void discard(StagedImage image) {
+        try {
+            Files.deleteIfExists(image.getFile());
+        }
+        catch (IOException e) {
+            //Left-over files in the staging directory are harmless
+            log.warn("Could not delete staged image {}", image.getFile(), e);
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return Files.exists(pathOf(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(pathOf(key));
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(pathOf(key));
+    }
+
+    @Override
+    public void writeTo(String key, long start, long length, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = start;
+        long end = start + length;
+        while(position < end){
+            FileChannel channel = openChannel(key);
+            try {
+                long sent = channel.transferTo(position, end - position, target);
+                if(sent == 0 && position >= channel.size()){
+                    throw new IOException("Image " + key + " is shorter than expected");
+                }
+                position += sent;
+            }
+            catch (ClosedByInterruptException e) {
+                throw e;
+            }
+            catch (ClosedChannelException e) {
+                //The channel has been evicted and closed by another request, open it again and carry on
+            }
+        }
+    }
+
+    @Override
+    public Path getFile(String key) {
+        return pathOf(key);
+    }
+
+    @Override
+    public void delete(String hash) throws IOException {
+        if(hash == null || !HASH.matcher(hash).matches()){
+            throw new IllegalArgumentException("Invalid image hash: " + hash);
+        }
+        Path file = pathOf(hash);
+        //Delete the thumbnails first, so a content never stays without its original
+        if(Files.isDirectory(file.getParent())){
+            try (DirectoryStream<Path> thumbnails = Files.newDirectoryStream(file.getParent(), hash + "-*")) {
+                for(Path thumbnail: thumbnails){
+                    close(openFiles.remove(thumbnail.getFileName().toString()));
+                    Files.deleteIfExists(thumbnail);
+                }
+            }
+        }
+        close(openFiles.remove(hash));
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void deleteThumbnail(String key) throws IOException {
+        if(key == null || !THUMBNAIL_KEY.matcher(key).matches()){
+            throw new IllegalArgumentException("Invalid thumbnail key: " + key);
+        }
+        close(openFiles.remove(key));
+        Files.deleteIfExists(pathOf(key));
+    }
+
+    @Override
+    public List<String> listHashes() throws IOException {
+        if(!Files.isDirectory(root)){
+            return List.of();
+        }
+        //Contents are kept two directories down, the staging directory holds no file named after a hash
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            //A thumbnail stands for its original, which may have been deleted before the thumbnail was written
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> KEY.matcher(name).matches())
+                    .map(name -> name.substring(0, 64))
+                    .distinct()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Method to get the open channel of a content, opening it if it is not open yet
+     * @param key - The SHA-256 of the content in hex, or the key of a thumbnail
+     * @return The open channel
+     * @throws IOException - If the content cannot be opened
+     */
+    private FileChannel openChannel(String key) throws IOException {
+        FileChannel channel = openFiles.get(key);
+        if(channel != null && channel.isOpen()){
+            return channel;
+        }
+        if(channel != null){
+            //The channel has been closed by an interrupted request
+            openFiles.remove(key, channel);
+        }
+        channel = FileChannel.open(pathOf(key), StandardOpenOption.READ);
+        FileChannel opened = openFiles.putIfAbsent(key, channel);
+        if(opened != null){
+            //Another request opened the content at the same time
+            close(channel);
+            return opened;
+        }
+        return channel;
+    }
+
+    private static void close(FileChannel channel){
+        if(channel == null){
+            return;
+        }
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            log.warn("Could not close image file", e);
+        }
+    }
+
+    /**
+     * Method to get the file of a content
+     * @param key - The SHA-256 of the content in hex, or the key of a thumbnail
+     * @return The path of the file, which may not exist
+     */
+    Path pathOf(String key){
+        //The key comes from the database, but it is checked so it can never point outside the store
+        if(key == null || !KEY.matcher(key).matches()){
+            throw new IllegalArgumentException("Invalid image key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static MessageDigest newDigest(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            //Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes){
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for(byte b: bytes){
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.ordersystem.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * This interface is the storage backend of item image contents.
+ * Contents are addressed by the SHA-256 of their bytes, so the same image uploaded many times is stored once.
+ * The database keeps which images use each content, the store only keeps the bytes.
+ * Contents made from another content, such as thumbnails, are stored under a key made of its hash and a suffix,
+ * and are deleted with it.
+ */
+public interface ImageStore {
+    /**
+     * Method to get the key of a thumbnail of a content
+     * @param hash - The SHA-256 of the original content in hex
+     * @param width - The width of the thumbnail in pixels
+     * @return The key of the thumbnail
+     */
+    static String thumbnailKey(String hash, int width){
+        return hash + "-w" + width;
+    }
+
+    /**
+     * Method to copy new content into the store without making it visible yet, computing its hash on the way
+     * @param content - The content to copy, read until its end
+     * @return The staged content, which must be committed or discarded
+     * @throws IOException - If the content cannot be read or written
+     */
+    StagedImage stage(InputStream content) throws IOException;
+
+    /**
+     * Method to make staged content readable under its hash. Content already stored under that hash is kept.
+     * @param image - The staged content
+     * @throws IOException - If the content cannot be moved into place
+     */
+    default void commit(StagedImage image) throws IOException {
+        commit(image, image.getHash());
+    }
+
+    /**
+     * Method to make staged content readable under a key. Content already stored under that key is kept.
+     * @param image - The staged content
+     * @param key - The hash of the content, or the key of a content made from another content
+     * @throws IOException - If the content cannot be moved into place
+     */
+    void commit(StagedImage image, String key) throws IOException;
+
+    /**
+     * Method to drop staged content that has not been committed, does nothing if it has been committed
+     * @param image - The staged content
+     */
+    void discard(StagedImage image);
+
+    /**
+     * Method to check whether content is stored under a key
+     * @param key - The SHA-256 of the content in hex, or the key of a thumbnail
+     * @return True if the content is stored
+     */
+    boolean contains(String key);
+
+    /**
+     * Method to get the size of a stored content
+     * @param key - The SHA-256 of the content in hex, or the key of a thumbnail
+     * @return The size of the content in bytes
+     * @throws IOException - If the content is not stored
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Method to read a stored content from its start
+     * @param key - The SHA-256 of the content in hex, or the key of a thumbnail
+     * @return A stream of the content, which must be closed
+     * @throws IOException - If the content cannot be read
+     */
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Method to write part of a stored content to a stream
+     * @param key - The SHA-256 of the content in hex, or the key of a thumbnail
+     * @param start - The position of the first byte to write, starting from 0
+     * @param length - The number of bytes to write
+     * @param out - The stream to write the content to
+     * @throws IOException - If the content cannot be read or written
+     */
+    void writeTo(String key, long start, long length, OutputStream out) throws IOException;
+
+    /**
+     * Method to get the local file of a stored content, so the web server can send it without copying it through the JVM
+     * @param key - The SHA-256 of the content in hex, or the key of a thumbnail
+     * @return The file, or null if the store does not keep its contents in local files
+     */
+    Path getFile(String key);
+
+    /**
+     * Method to delete a stored content and the contents made from it, once no image uses it anymore
+     * @param hash - The SHA-256 of the content in hex
+     * @throws IOException - If the content cannot be deleted
+     */
+    void delete(String hash) throws IOException;
+
+    /**
+     * Method to delete a thumbnail only, keeping its original content
+     * @param key - The key of the thumbnail
+     * @throws IOException - If the thumbnail cannot be deleted
+     */
+    void deleteThumbnail(String key) throws IOException;
+
+    /**
+     * Method to list the hashes of all stored contents, without the contents made from them.
+     * A content whose original is gone but whose thumbnails are still stored is listed too, so they can be deleted.
+     * @return The SHA-256 of each stored content in hex, once each
+     * @throws IOException - If the store cannot be listed
+     */
+    List<String> listHashes() throws IOException;
+}
@@ -0,0 +1,31 @@
+package com.example.ordersystem.storage;
+
+import java.nio.file.Path;
+
+/**
+ * This class is content copied into an ImageStore that is not readable yet.
+ * It is kept in a temporary file until it is committed under its hash or discarded.
+ */
+public class StagedImage {
+    private final String hash;
+    private final long size;
+    private final Path file;
+
+    public StagedImage(String hash, long size, Path file) {
+        this.hash = hash;
+        this.size = size;
+        this.file = file;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
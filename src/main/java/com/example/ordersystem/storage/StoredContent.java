@@ -0,0 +1,30 @@
+package com.example.ordersystem.storage;
+
+/**
+ * This class is a content of the image store ready to be sent to a client:
+ * the original content of an item image, or one of its thumbnails.
+ */
+public class StoredContent {
+    //Key of the content in the image store, also sent as its ETag
+    private final String key;
+    private final String contentType;
+    private final long length;
+
+    public StoredContent(String key, String contentType, long length) {
+        this.key = key;
+        this.contentType = contentType;
+        this.length = length;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getLength() {
+        return length;
+    }
+}
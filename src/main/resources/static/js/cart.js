@@ -26,4 +26,76 @@ $('#cart-amount').on('change blur', function() {
     }else{
         this.value = cartValue
     }
-});
\ No newline at end of file
+});
+
+//Send changes to the cart as JSON and show the new cart summary, without reloading the page.
+//Returns a promise of the summary, or of null if the changes were refused.
+//Refused changes are rolled back on the page, the page is reloaded if the changes could not be sent
+function applyCartOperations(operations) {
+    return fetch('/shopping-cart/operations', {
+        headers: {
+            'Accept': 'application/json',
+            'Content-Type': 'application/json'
+        },
+        method: "POST",
+        body: JSON.stringify(operations)
+    }).then(res => {
+        if(res.status === 400){
+            //Nothing was saved, tell the user why and show the amounts in the cart again
+            return res.json().then(error => {
+                alert(error.message || 'The cart could not be updated.')
+                restoreCartAmounts()
+                return null
+            })
+        }
+        if(!res.ok){
+            throw new Error('Cart update failed with status ' + res.status)
+        }
+        return res.json().then(summary => {
+            showCartSummary(summary)
+            return summary
+        })
+    }).catch(() => {
+        alert('The cart could not be updated, the page will be reloaded.')
+        window.location.reload()
+    });
+}
+
+function showCartSummary(summary) {
+    //Update the subtotal of each line, and drop the lines no longer in the cart
+    $(".cart-line").each(function(index, row) {
+        let line = summary.lines[$(row).data("item-id")]
+        if(line === undefined){
+            $(row).remove()
+        }else{
+            $(row).find(".itemSmallSum").text((line.price * line.amount).toFixed(2))
+            //The default value is the amount saved in the cart, used to roll back a refused change
+            $(row).find("input[name=amount]").val(line.amount).prop("defaultValue", line.amount)
+        }
+    });
+    let total = Number(summary.total).toFixed(2)
+    $("#totalSum").text("$" + total);
+    $(".cart-sum").text("$" + total);
+    $(".cart-qty").text(summary.quantity);
+}
+
+function restoreCartAmounts() {
+    $(".cart-line input[name=amount]").each(function(index, input) {
+        input.value = input.defaultValue
+    });
+}
+
+$(document).on('submit', '.cart-form', function(event) {
+    event.preventDefault()
+    //The form sits in a table row, so its inputs are reached through the form rather than inside it
+    let amount = parseInt(this.elements["amount"].value)
+    if(isNaN(amount) || amount < 1){
+        return
+    }
+    applyCartOperations([{type: "set", itemId: parseInt(this.elements["shopId"].value), amount: amount}])
+});
+
+$(document).on('click', '.cart-remove', function(event) {
+    event.preventDefault()
+    applyCartOperations([{type: "remove", itemId: $(this).closest(".cart-line").data("item-id")}])
+});
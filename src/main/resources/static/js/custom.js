@@ -192,11 +192,32 @@ function uploadImg(id){
         }
     }
 
-    //Upload all images to the server with a POST request
-    fetch('/item/'+id+'/image', {
+    if(fileinput.files.length === 0){
+        return Promise.resolve()
+    }
+
+    //Upload all images to the server with a POST request, then tell the admin which files could not be saved
+    return fetch('/item/'+id+'/image', {
         method: "POST",
         body: imgData
+    }).then(res => {
+        if(res.status === 413){
+            alert("Too many images were selected, the images were not uploaded.")
+            return null
+        }
+        if(res.status === 503){
+            alert("The server is busy, the images were not uploaded. Please try again in a moment.")
+            return null
+        }
+        return res.json()
     })
+        .then(result => {
+            if(result !== null && result.failedCount > 0){
+                let failed = result.files.filter(file => file.error !== null)
+                    .map(file => file.fileName + ": " + file.error)
+                alert("Some images could not be uploaded:\n" + failed.join("\n"))
+            }
+        })
 }
 
 function loadInfo(){
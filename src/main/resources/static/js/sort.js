@@ -30,7 +30,7 @@ $(function() {
 
     //Get the sort value from the URL parameter
     let sortValue = params.get("sortField");
-    let validSort = ["id","name","priceHTL","priceLTH"];
+    let validSort = ["id","name","priceHTL","priceLTH","relevance"];
 
     if (sortValue && validSort.includes(sortValue)) {
         //If there exists a sort value in the URL parameter, set the option value and update JQuery nice-select
@@ -0,0 +1,93 @@
+package com.example.ordersystem.cache;
+
+import com.example.ordersystem.model.CartSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CartSummaryCacheTest {
+    private CartSummaryCache cartSummaryCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void init(){
+        //Create a small cache so eviction can be tested
+        cartSummaryCache = new CartSummaryCache(2);
+        loads = new AtomicInteger();
+    }
+
+    //A cart with 2 hot dogs at 3.99 and 1 pie at 1.50
+    private CartSummary load(){
+        loads.incrementAndGet();
+        Map<Long, CartSummary.Line> lines = new HashMap<>();
+        lines.put(1L, new CartSummary.Line(new BigDecimal("3.99"), 2));
+        lines.put(2L, new CartSummary.Line(new BigDecimal("1.50"), 1));
+        return new CartSummary(lines);
+    }
+
+    @Test
+    public void getSummaryTests(){
+        //The first lookup is a miss that goes to the loader, the second is a hit
+        CartSummary summary = cartSummaryCache.getSummary(1L, this::load);
+        assertEquals(2, summary.getQuantity());
+        assertEquals(new BigDecimal("9.48"), summary.getTotal());
+        assertSame(summary, cartSummaryCache.getSummary(1L, this::load));
+        assertEquals(1, loads.get());
+        assertEquals(1, cartSummaryCache.getHits());
+        assertEquals(1, cartSummaryCache.getMisses());
+
+        //An empty cart has no items and costs nothing
+        assertEquals(0, CartSummary.EMPTY.getQuantity());
+        assertEquals(new BigDecimal("0.00"), CartSummary.EMPTY.getTotal());
+    }
+
+    @Test
+    public void cartChangeTests(){
+        cartSummaryCache.getSummary(1L, this::load);
+        cartSummaryCache.getSummary(2L, this::load);
+
+        //A change to a cart drops its summary, which is loaded again on its next request
+        cartSummaryCache.invalidate(1L);
+        cartSummaryCache.getSummary(1L, this::load);
+        assertEquals(3, loads.get());
+
+        //The summaries of other accounts are kept
+        cartSummaryCache.getSummary(2L, this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void itemChangeTests(){
+        cartSummaryCache.getSummary(1L, this::load);
+        cartSummaryCache.getSummary(2L, this::load);
+
+        //A new price is applied to every cart holding the item
+        cartSummaryCache.priceChanged(2L, new BigDecimal("2.50"));
+        assertEquals(new BigDecimal("10.48"), cartSummaryCache.getSummary(1L, this::load).getTotal());
+        assertEquals(new BigDecimal("10.48"), cartSummaryCache.getSummary(2L, this::load).getTotal());
+
+        //An item deleted or made unavailable leaves every cart
+        cartSummaryCache.itemRemovedEverywhere(1L);
+        assertEquals(1, cartSummaryCache.getSummary(1L, this::load).getQuantity());
+        assertEquals(new BigDecimal("2.50"), cartSummaryCache.getSummary(2L, this::load).getTotal());
+        assertEquals(2, loads.get());
+
+    }
+
+    @Test
+    public void concurrentChangeTests(){
+        //A summary loaded while a change is committed is not cached, it may be missing the change
+        cartSummaryCache.getSummary(1L, () -> {
+            cartSummaryCache.invalidate(1L);
+            return load();
+        });
+        cartSummaryCache.getSummary(1L, this::load);
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.ordersystem.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogVersionsTest {
+
+    @Test
+    public void itemChangedTests(){
+        CatalogVersions catalogVersions = new CatalogVersions();
+        String catalogETag = catalogVersions.getCatalogETag();
+        String item1ETag = catalogVersions.getItemETag(1L);
+        String item2ETag = catalogVersions.getItemETag(2L);
+        assertNotEquals(item1ETag, item2ETag);
+
+        //Outside a transaction the versions are bumped straight away, only for the changed item
+        catalogVersions.itemChanged(1L);
+        assertNotEquals(catalogETag, catalogVersions.getCatalogETag());
+        assertNotEquals(item1ETag, catalogVersions.getItemETag(1L));
+        assertEquals(item2ETag, catalogVersions.getItemETag(2L));
+
+        //Nothing changes while nothing is changed
+        assertEquals(catalogVersions.getCatalogETag(), catalogVersions.getCatalogETag());
+    }
+
+    @Test
+    public void restartTests() throws InterruptedException {
+        //Versions counted by another run of the application never match
+        CatalogVersions before = new CatalogVersions();
+        Thread.sleep(2);
+        CatalogVersions after = new CatalogVersions();
+        assertNotEquals(before.getCatalogETag(), after.getCatalogETag());
+        assertNotEquals(before.getItemETag(1L), after.getItemETag(1L));
+    }
+}
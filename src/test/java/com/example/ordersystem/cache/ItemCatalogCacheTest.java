@@ -0,0 +1,95 @@
+package com.example.ordersystem.cache;
+
+import com.example.ordersystem.model.Item;
+import com.example.ordersystem.model.ItemSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemCatalogCacheTest {
+    private ItemCatalogCache catalogCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void init(){
+        //Create a small cache so eviction can be tested
+        catalogCache = new ItemCatalogCache(2);
+        loads = new AtomicInteger();
+    }
+
+    private Item newItem(Long id){
+        Item item = new Item("Hot dog " + id, "Very hot", "dog.jpg", new BigDecimal("3.99"), "Hotdog", true);
+        item.setId(id);
+        return item;
+    }
+
+    private ItemSummary newSummary(Long id){
+        return new ItemSummary(id, "Hot dog " + id, new BigDecimal("3.99"), "Hotdog", true, null);
+    }
+
+    private Item load(Long id){
+        loads.incrementAndGet();
+        return newItem(id);
+    }
+
+    @Test
+    public void getItemTests(){
+        //The first lookup is a miss that goes to the loader, the second is a hit
+        assertEquals("Hot dog 1", catalogCache.getItem(1L, () -> load(1L)).getItemName());
+        assertEquals("Hot dog 1", catalogCache.getItem(1L, () -> load(1L)).getItemName());
+        assertEquals(1, loads.get());
+        assertEquals(1, catalogCache.getHits());
+        assertEquals(1, catalogCache.getMisses());
+
+        //Items that do not exist are not cached
+        assertNull(catalogCache.getItem(9L, () -> null));
+        assertNull(catalogCache.getItem(9L, () -> null));
+        assertEquals(3, catalogCache.getMisses());
+    }
+
+    @Test
+    public void evictionTests(){
+        //Fill the cache over its size so the least recently used item is evicted
+        catalogCache.getItem(1L, () -> load(1L));
+        catalogCache.getItem(2L, () -> load(2L));
+        catalogCache.getItem(1L, () -> load(1L));
+        catalogCache.getItem(3L, () -> load(3L));
+        assertEquals(1, catalogCache.getEvictions());
+
+        //Item 1 was used recently so it is still cached, item 2 has to be loaded again
+        catalogCache.getItem(1L, () -> load(1L));
+        catalogCache.getItem(2L, () -> load(2L));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void invalidateTests(){
+        catalogCache.getItem(1L, () -> load(1L));
+        List<ItemSummary> catalog = catalogCache.getCatalog(() -> List.of(newSummary(1L), newSummary(2L)));
+        assertEquals(2, catalog.size());
+        assertSame(catalog, catalogCache.getCatalog(() -> List.of()));
+
+        //Invalidating an item drops both the item and the catalog snapshot
+        catalogCache.invalidate(1L);
+        catalogCache.getItem(1L, () -> load(1L));
+        assertEquals(2, loads.get());
+        assertEquals(0, catalogCache.getCatalog(List::of).size());
+    }
+
+    @Test
+    public void invalidateDuringLoadTests(){
+        //An item changed while it was being loaded must not be cached with its old state
+        catalogCache.getItem(1L, () -> {
+            Item item = load(1L);
+            catalogCache.invalidate(1L);
+            return item;
+        });
+        catalogCache.getItem(1L, () -> load(1L));
+        assertEquals(2, loads.get());
+    }
+}
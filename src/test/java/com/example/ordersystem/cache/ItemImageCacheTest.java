@@ -0,0 +1,84 @@
+package com.example.ordersystem.cache;
+
+import com.example.ordersystem.model.ItemImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemImageCacheTest {
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void init(){
+        loads = new AtomicInteger();
+    }
+
+    private byte[] load(int size){
+        loads.incrementAndGet();
+        return new byte[size];
+    }
+
+    @Test
+    public void getImageTests(){
+        ItemImageCache imageCache = new ItemImageCache(2, 100, 40, false);
+        ItemImage image = new ItemImage();
+        image.setId(1L);
+
+        //The image record is loaded once, then served from the cache until it is invalidated
+        assertSame(image, imageCache.getImage(1L, () -> { loads.incrementAndGet(); return image; }));
+        assertSame(image, imageCache.getImage(1L, () -> { loads.incrementAndGet(); return image; }));
+        assertEquals(1, loads.get());
+
+        imageCache.invalidateImage(1L);
+        imageCache.getImage(1L, () -> { loads.incrementAndGet(); return image; });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void contentWeightTests() throws IOException {
+        //The cache holds 100 bytes, and contents of at most 40 bytes
+        ItemImageCache imageCache = new ItemImageCache(2, 100, 40, false);
+
+        //Contents larger than the maximum content size are never cached
+        assertNull(imageCache.getContent("large", 41, () -> load(41)));
+        assertEquals(0, loads.get());
+
+        //Three contents of 40 bytes do not fit together, the least recently used one is evicted
+        imageCache.getContent("a", 40, () -> load(40));
+        imageCache.getContent("b", 40, () -> load(40));
+        imageCache.getContent("a", 40, () -> load(40));
+        assertEquals(2, loads.get());
+        imageCache.getContent("c", 40, () -> load(40));
+        assertTrue(imageCache.getContentBytes() <= 100);
+        imageCache.getContent("a", 40, () -> load(40));
+        assertEquals(3, loads.get());
+        imageCache.getContent("b", 40, () -> load(40));
+        assertEquals(4, loads.get());
+
+        //2 of the 6 lookups of cacheable contents were hits
+        assertEquals(2.0 / 6, imageCache.getContentHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void invalidateContentTests() throws IOException {
+        ItemImageCache imageCache = new ItemImageCache(2, 100, 40, true);
+        String hash = "ab".repeat(32);
+
+        //A content and its thumbnails are dropped together
+        ByteBuffer content = imageCache.getContent(hash, 10, () -> load(10));
+        imageCache.getContent(hash + "-w200", 5, () -> load(5));
+        assertEquals(10, content.remaining());
+        assertFalse(content.hasArray());
+        assertEquals(15, imageCache.getContentBytes());
+
+        imageCache.invalidateContent(hash);
+        assertEquals(0, imageCache.getContentBytes());
+        imageCache.getContent(hash, 10, () -> load(10));
+        assertEquals(3, loads.get());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.ordersystem.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CategoryFacetIndexTest {
+    private CategoryFacetIndex facetIndex;
+
+    @BeforeEach
+    public void init(){
+        //Load the index with a few items in different categories
+        facetIndex = new CategoryFacetIndex();
+        facetIndex.load(List.of(
+                new ItemFacet(1L, "Cupcake", true),
+                new ItemFacet(2L, "Cake", true),
+                new ItemFacet(3L, "Cupcake", false)
+        ), facetIndex.getModCount());
+    }
+
+    @Test
+    public void loadTests(){
+        assertTrue(facetIndex.isLoaded());
+        assertEquals(3, facetIndex.countAllItems());
+        assertEquals(2, facetIndex.countItems("Cupcake"));
+        assertEquals(1, facetIndex.countAvailable("Cupcake"));
+        assertEquals(0, facetIndex.countItems("Donut"));
+
+        //Categories keep the order in which they first appeared
+        List<CategoryFacet> facets = facetIndex.getFacets();
+        assertEquals("Cupcake", facets.get(0).getCategory());
+        assertEquals("Cake", facets.get(1).getCategory());
+    }
+
+    @Test
+    public void putTests(){
+        //Add a new item in a new category
+        facetIndex.put(new ItemFacet(4L, "Donut", true));
+        assertEquals(4, facetIndex.countAllItems());
+        assertEquals(1, facetIndex.countAvailable("Donut"));
+
+        //Toggle the availability of an existing item
+        facetIndex.put(new ItemFacet(3L, "Cupcake", true));
+        assertEquals(2, facetIndex.countItems("Cupcake"));
+        assertEquals(2, facetIndex.countAvailable("Cupcake"));
+
+        //Move the only cake to another category, the empty category disappears
+        facetIndex.put(new ItemFacet(2L, "Donut", true));
+        assertEquals(0, facetIndex.countItems("Cake"));
+        assertEquals(2, facetIndex.getFacets().size());
+        assertEquals("Donut", facetIndex.getFacets().get(1).getCategory());
+    }
+
+    @Test
+    public void removeTests(){
+        facetIndex.remove(1L);
+        assertEquals(1, facetIndex.countItems("Cupcake"));
+        assertEquals(0, facetIndex.countAvailable("Cupcake"));
+        //Cake now has the lowest item ID so it is listed first
+        assertEquals("Cake", facetIndex.getFacets().get(0).getCategory());
+
+        //Removing an unknown item does nothing
+        facetIndex.remove(9L);
+        assertEquals(2, facetIndex.countAllItems());
+    }
+
+    @Test
+    public void loadDuringUpdateTests(){
+        //A load that started before an update must be discarded
+        CategoryFacetIndex newIndex = new CategoryFacetIndex();
+        long modCount = newIndex.getModCount();
+        newIndex.put(new ItemFacet(1L, "Cupcake", true));
+        assertFalse(newIndex.load(List.of(), modCount));
+        assertFalse(newIndex.isLoaded());
+    }
+}
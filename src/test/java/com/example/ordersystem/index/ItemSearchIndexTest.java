@@ -0,0 +1,87 @@
+package com.example.ordersystem.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemSearchIndexTest {
+    private ItemSearchIndex searchIndex;
+
+    @BeforeEach
+    public void init(){
+        //Load the index with a few items, only their names are searched
+        searchIndex = new ItemSearchIndex(false, false);
+        searchIndex.load(List.of(
+                new SearchDocument(1L, "Chocolate Cupcake", "Cupcake", "Sweet"),
+                new SearchDocument(2L, "Cup", "Cake", "Small"),
+                new SearchDocument(3L, "Cupcake", "Cupcake", "Plain"),
+                new SearchDocument(4L, "Hot dog", "Hotdog", "Very hot cupcake")
+        ), searchIndex.getModCount());
+    }
+
+    @Test
+    public void searchTests(){
+        //Exact name first, then prefix of the name, then prefix of a word
+        assertEquals(List.of(2L, 3L, 1L), searchIndex.search("cup", null));
+        //Case is ignored
+        assertEquals(List.of(3L, 1L), searchIndex.search("CUPCAKE", null));
+        //Substrings in the middle of a word
+        assertEquals(List.of(3L, 1L), searchIndex.search("pca", null));
+        //Terms shorter than a gram
+        assertEquals(List.of(4L), searchIndex.search("d", null));
+        assertEquals(List.of(), searchIndex.search("zz", null));
+        //All grams of the term must be there in the right order
+        assertEquals(List.of(), searchIndex.search("cupdog", null));
+        //Category filter
+        assertEquals(List.of(2L), searchIndex.search("cup", "Cake"));
+        //The description is not indexed
+        assertEquals(List.of(), searchIndex.search("sweet", null));
+        assertEquals(List.of(), searchIndex.search("", null));
+    }
+
+    @Test
+    public void optionalFieldsTests(){
+        ItemSearchIndex fullIndex = new ItemSearchIndex(true, true);
+        fullIndex.load(List.of(
+                new SearchDocument(1L, "Hot dog", "Hotdog", "Very hot"),
+                new SearchDocument(2L, "Chili dog", "Hotdog", "Spicy"),
+                new SearchDocument(3L, "Hotcake", "Cake", "Warm")
+        ), fullIndex.getModCount());
+
+        //Name matches rank above category matches, which rank above description matches
+        //Names matching the same way are ordered by length, then by ID
+        assertEquals(List.of(1L, 3L, 2L), fullIndex.search("hot", null));
+        assertEquals(List.of(2L), fullIndex.search("spicy", null));
+    }
+
+    @Test
+    public void putAndRemoveTests(){
+        //Rename an item, the old name is no longer found
+        searchIndex.put(new SearchDocument(4L, "Corn dog", "Hotdog", "Crunchy"));
+        assertEquals(List.of(), searchIndex.search("hot", null));
+        assertEquals(List.of(4L), searchIndex.search("corn", null));
+
+        //Add a new item and remove another one
+        searchIndex.put(new SearchDocument(5L, "Cupcake tower", "Cupcake", "Big"));
+        searchIndex.remove(3L);
+        assertEquals(List.of(5L, 1L), searchIndex.search("cupcake", null));
+        assertEquals(4, searchIndex.size());
+
+        //Removing an unknown item does nothing
+        searchIndex.remove(9L);
+        assertEquals(4, searchIndex.size());
+    }
+
+    @Test
+    public void loadDuringUpdateTests(){
+        //A load that started before an update must be discarded
+        ItemSearchIndex newIndex = new ItemSearchIndex(false, false);
+        long modCount = newIndex.getModCount();
+        newIndex.put(new SearchDocument(1L, "Cupcake", "Cupcake", "Plain"));
+        assertFalse(newIndex.load(List.of(), modCount));
+        assertFalse(newIndex.isLoaded());
+    }
+}
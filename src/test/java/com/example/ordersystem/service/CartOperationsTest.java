@@ -0,0 +1,78 @@
+package com.example.ordersystem.service;
+
+import com.example.ordersystem.model.CartOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CartOperationsTest {
+
+    @Test
+    public void mergeOperationsOnDifferentItems() {
+        Map<Long, CartService.NetChange> changes = CartService.mergeOperations(Arrays.asList(
+                new CartOperation(CartOperation.ADD, 1L, 2),
+                new CartOperation(CartOperation.SET, 2L, 5),
+                new CartOperation(CartOperation.REMOVE, 3L, 0)));
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<>(changes.keySet()));
+        assertFalse(changes.get(1L).isAbsolute());
+        assertEquals(2, changes.get(1L).getAmount());
+        assertTrue(changes.get(2L).isAbsolute());
+        assertEquals(5, changes.get(2L).getAmount());
+        assertTrue(changes.get(3L).isAbsolute());
+        assertEquals(0, changes.get(3L).getAmount());
+    }
+
+    @Test
+    public void mergeOperationsOnSameItem() {
+        //Adds are summed while the amount in the cart is not known
+        CartService.NetChange added = CartService.mergeOperations(Arrays.asList(
+                new CartOperation(CartOperation.ADD, 1L, 2),
+                new CartOperation(CartOperation.ADD, 1L, 3))).get(1L);
+        assertFalse(added.isAbsolute());
+        assertEquals(5, added.getAmount());
+
+        //Adding after a remove gives the final amount
+        CartService.NetChange readded = CartService.mergeOperations(Arrays.asList(
+                new CartOperation(CartOperation.ADD, 1L, 2),
+                new CartOperation(CartOperation.REMOVE, 1L, 0),
+                new CartOperation(CartOperation.ADD, 1L, 4))).get(1L);
+        assertTrue(readded.isAbsolute());
+        assertEquals(4, readded.getAmount());
+
+        //The last set wins over the adds before it
+        CartService.NetChange set = CartService.mergeOperations(Arrays.asList(
+                new CartOperation(CartOperation.ADD, 1L, 2),
+                new CartOperation(CartOperation.SET, 1L, 7))).get(1L);
+        assertTrue(set.isAbsolute());
+        assertEquals(7, set.getAmount());
+    }
+
+    @Test
+    public void rejectInvalidOperations() {
+        assertThrows(IllegalArgumentException.class, () -> CartService.mergeOperations(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> CartService.mergeOperations(
+                Collections.singletonList(new CartOperation("move", 1L, 1))));
+        assertThrows(IllegalArgumentException.class, () -> CartService.mergeOperations(
+                Collections.singletonList(new CartOperation(CartOperation.ADD, null, 1))));
+        assertThrows(IllegalArgumentException.class, () -> CartService.mergeOperations(
+                Collections.singletonList(new CartOperation(CartOperation.ADD, 1L, 0))));
+        assertThrows(IllegalArgumentException.class, () -> CartService.mergeOperations(
+                Collections.singletonList(new CartOperation(CartOperation.SET, 1L, -1))));
+        assertThrows(IllegalArgumentException.class, () -> CartService.mergeOperations(Arrays.asList(
+                new CartOperation(CartOperation.ADD, 1L, Integer.MAX_VALUE),
+                new CartOperation(CartOperation.ADD, 1L, 1))));
+
+        List<CartOperation> tooMany = new ArrayList<>();
+        for(long i = 0; i <= CartService.MAX_OPERATIONS; i++){
+            tooMany.add(new CartOperation(CartOperation.ADD, i, 1));
+        }
+        assertThrows(IllegalArgumentException.class, () -> CartService.mergeOperations(tooMany));
+    }
+}
@@ -19,7 +19,9 @@ import javax.transaction.Transactional;
 import java.io.File;
 import java.math.BigDecimal;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import static org.junit.Assert.*;
 
@@ -74,6 +76,29 @@ public class CartServiceTest {
         assertTrue(addedAmount >= 5);
     }
 
+    @Test
+    public void addShopTwice() {
+        //Create a new test Account and a new test Item
+        Account testUser1 = new Account("Mike", "Dean", "123 Testing Lane", "0903682439", "test@gmail.com", "password", AccountRole.USER);
+        Item testItem1 = new Item("testCake1", "First test", "product-1.jpg", new BigDecimal("11.00"),"Cake",true);
+        accountService.signUpAccount(testUser1);
+        itemService.saveItem(testItem1);
+        //Add the same Item twice, the second time adds to the first cart
+        assertEquals(5, cartService.addItem(testItem1.getId(), 5, testUser1));
+        assertEquals(8, cartService.addItem(testItem1.getId(), 3, testUser1));
+
+        //Assert there is only one cart holding the total amount
+        List<Cart> cartlist = cartService.getAllCarts(testUser1);
+        assertEquals(1, cartlist.size());
+        assertEquals(8, cartlist.get(0).getAmount());
+
+        //An amount below 1 and an unavailable item are rejected
+        Item testItem2 = new Item("testCake2", "Second test", "product-2.jpg", new BigDecimal("4.50"),"Cake",false);
+        itemService.saveItem(testItem2);
+        assertThrows(IllegalArgumentException.class, () -> cartService.addItem(testItem1.getId(), 0, testUser1));
+        assertThrows(NoSuchElementException.class, () -> cartService.addItem(testItem2.getId(), 1, testUser1));
+    }
+
     @Test
     public void getCart() {
         //Create a new test Account and a new test Item
@@ -180,12 +205,92 @@ public class CartServiceTest {
         cartService.addItem(testItem1.getId(), amount, testUser1);
 
         //Call updateAmount to add 2 to the item's amount in the cart
-        int addedAmount = cartService.updateAmount(2, testItem1.getId(), testUser1);
+        BigDecimal subtotal = cartService.updateAmount(2, testItem1.getId(), testUser1);
+        //The subtotal keeps the cents of the price
+        assertEquals(0, new BigDecimal("22.00").compareTo(subtotal));
 
         //Get the Cart object that was just updated
         Cart testCart1 = cartRepository.findByAccountAndItem(testUser1, testItem1);
 
         //Assert that the amount has been correctly updated
         assertEquals(amount, testCart1.getAmount());
+
+        //An item that is not in the cart, or an amount below 1, is rejected
+        Item testItem2 = new Item("testCake2", "Second test", "product-2.jpg", new BigDecimal("4.50"),"Cake",true);
+        itemService.saveItem(testItem2);
+        assertThrows(NoSuchElementException.class, () -> cartService.updateAmount(2, testItem2.getId(), testUser1));
+        assertThrows(IllegalArgumentException.class, () -> cartService.updateAmount(0, testItem1.getId(), testUser1));
+    }
+
+    @Test
+    public void getCartSummary() {
+        //Create a new test Account and two new test Items
+        Account testUser1 = new Account("Mike", "Dean", "123 Testing Lane", "0903682439", "test@gmail.com", "password", AccountRole.USER);
+        Item testItem1 = new Item("testCake1", "First test", "product-1.jpg", new BigDecimal("11.00"),"Cake",true);
+        Item testItem2 = new Item("testCake2", "Second test", "product-2.jpg", new BigDecimal("2.50"),"Cake",true);
+        accountService.signUpAccount(testUser1);
+        itemService.saveItem(testItem1);
+        itemService.saveItem(testItem2);
+        cartService.addItem(testItem1.getId(), 2, testUser1);
+        cartService.addItem(testItem2.getId(), 3, testUser1);
+
+        //The summary counts the different items in the cart and adds up their prices
+        CartSummary summary = cartService.getCartSummary(testUser1.getId());
+        assertEquals(2, summary.getQuantity());
+        assertEquals(new BigDecimal("29.50"), summary.getTotal());
+
+        //Deleting a cart removes its item from the summary
+        cartService.deleteCart(cartRepository.findByAccountAndItem(testUser1, testItem2).getId());
+        assertEquals(new BigDecimal("22.00"), cartService.getCartSummary(testUser1.getId()).getTotal());
+    }
+
+    @Test
+    public void removeUnavailableItem() {
+        //Create a new test Account and a new test Item, and add the Item to the Account's cart
+        Account testUser1 = new Account("Mike", "Dean", "123 Testing Lane", "0903682439", "test@gmail.com", "password", AccountRole.USER);
+        Item testItem1 = new Item("testCake1", "First test", "product-1.jpg", new BigDecimal("11.00"),"Cake",true);
+        accountService.signUpAccount(testUser1);
+        itemService.saveItem(testItem1);
+        cartService.addItem(testItem1.getId(), 5, testUser1);
+
+        //Making the Item unavailable removes it from the cart and counts the removed carts
+        assertEquals(1, itemService.changeAvailability(testItem1.getId()));
+        assertTrue(cartService.getAllCarts(testUser1).isEmpty());
+    }
+
+    @Test
+    public void applyOperations() {
+        //Create a new test Account and three test Items, one of them unavailable, and add the first Item to the cart
+        Account testUser1 = new Account("Mike", "Dean", "123 Testing Lane", "0903682439", "test@gmail.com", "password", AccountRole.USER);
+        Item testItem1 = new Item("testCake1", "First test", "product-1.jpg", new BigDecimal("11.00"),"Cake",true);
+        Item testItem2 = new Item("testCake2", "Second test", "product-2.jpg", new BigDecimal("4.50"),"Cake",true);
+        Item testItem3 = new Item("testCake3", "Third test", "product-3.jpg", new BigDecimal("2.00"),"Cake",false);
+        accountService.signUpAccount(testUser1);
+        itemService.saveItem(testItem1);
+        itemService.saveItem(testItem2);
+        itemService.saveItem(testItem3);
+        cartService.addItem(testItem1.getId(), 5, testUser1);
+
+        //Add to an item already in the cart, set a new one, and try to add the unavailable one
+        CartSummary summary = cartService.applyOperations(testUser1.getId(), Arrays.asList(
+                new CartOperation(CartOperation.ADD, testItem1.getId(), 1),
+                new CartOperation(CartOperation.SET, testItem2.getId(), 2),
+                new CartOperation(CartOperation.ADD, testItem3.getId(), 1)));
+        assertEquals(2, summary.getQuantity());
+        assertEquals(6, summary.getLines().get(testItem1.getId()).getAmount());
+        assertEquals(2, summary.getLines().get(testItem2.getId()).getAmount());
+        assertEquals(new BigDecimal("75.00"), summary.getTotal());
+
+        //Remove the first item and set the second one again
+        summary = cartService.applyOperations(testUser1.getId(), Arrays.asList(
+                new CartOperation(CartOperation.REMOVE, testItem1.getId(), 0),
+                new CartOperation(CartOperation.SET, testItem2.getId(), 3)));
+        assertEquals(1, summary.getQuantity());
+        assertEquals(new BigDecimal("13.50"), summary.getTotal());
+        assertEquals(summary.getTotal(), cartService.getCartSummary(testUser1.getId()).getTotal());
+
+        //An invalid operation is rejected
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(testUser1.getId(),
+                Arrays.asList(new CartOperation(CartOperation.ADD, testItem2.getId(), -1))));
     }
 }
\ No newline at end of file
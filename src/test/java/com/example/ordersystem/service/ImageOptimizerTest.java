@@ -0,0 +1,133 @@
+package com.example.ordersystem.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageOptimizerTest {
+    private Path dir;
+
+    @BeforeEach
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("image-optimizer");
+    }
+
+    @AfterEach
+    public void clear() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void optimizeTests() throws IOException {
+        ImageOptimizer imageOptimizer = new ImageOptimizer(true, 400, 0.85f);
+        //A large opaque PNG is scaled down to the maximum size and saved as progressive JPEG
+        Path file = dir.resolve("photo.png");
+        ImageIO.write(gradient(1200, 800, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        ImageOptimizer.OptimizedImage optimized = imageOptimizer.optimize(file, "image/png");
+        assertEquals("image/jpeg", optimized.getContentType());
+        assertEquals(400, optimized.getDimensions().width);
+        assertEquals(267, optimized.getDimensions().height);
+        assertTrue(optimized.getContent().length < Files.size(file));
+        assertEquals(400, ImageIO.read(new ByteArrayInputStream(optimized.getContent())).getWidth());
+
+        //A transparent PNG keeps its transparency
+        file = dir.resolve("logo.png");
+        ImageIO.write(gradient(800, 800, BufferedImage.TYPE_INT_ARGB), "png", file.toFile());
+        optimized = imageOptimizer.optimize(file, "image/png");
+        assertEquals("image/png", optimized.getContentType());
+        assertTrue(ImageIO.read(new ByteArrayInputStream(optimized.getContent())).getColorModel().hasAlpha());
+
+        //Other formats are stored as uploaded
+        assertNull(imageOptimizer.optimize(file, "image/gif"));
+        assertNull(new ImageOptimizer(false, 400, 0.85f).optimize(file, "image/png"));
+    }
+
+    @Test
+    public void orientationTests() throws IOException {
+        //A JPEG taken with the camera turned: stored 300 wide and 100 high, shown 100 wide and 300 high
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(gradient(300, 100, BufferedImage.TYPE_INT_RGB), "jpeg", encoded);
+        byte[] jpeg = withOrientation(encoded.toByteArray(), 6);
+        try (InputStream content = new ByteArrayInputStream(jpeg)) {
+            assertEquals(6, ImageOptimizer.readOrientation(content));
+        }
+        try (InputStream content = new ByteArrayInputStream(encoded.toByteArray())) {
+            assertEquals(1, ImageOptimizer.readOrientation(content));
+        }
+
+        Path file = dir.resolve("turned.jpg");
+        Files.write(file, jpeg);
+        ImageOptimizer.OptimizedImage optimized = new ImageOptimizer(true, 1600, 0.85f).optimize(file, "image/jpeg");
+        assertEquals(100, optimized.getDimensions().width);
+        assertEquals(300, optimized.getDimensions().height);
+    }
+
+    @Test
+    public void drawTests(){
+        //The left pixel is red and the right pixel is blue
+        BufferedImage source = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        source.setRGB(0, 0, Color.RED.getRGB());
+        source.setRGB(1, 0, Color.BLUE.getRGB());
+
+        //Turned a quarter clockwise, red goes to the top
+        BufferedImage turned = ImageOptimizer.draw(source, 2, 1, 6, false);
+        assertEquals(1, turned.getWidth());
+        assertEquals(2, turned.getHeight());
+        assertEquals(Color.RED.getRGB(), turned.getRGB(0, 0));
+        assertEquals(Color.BLUE.getRGB(), turned.getRGB(0, 1));
+
+        //Turned a quarter anticlockwise, red goes to the bottom
+        turned = ImageOptimizer.draw(source, 2, 1, 8, false);
+        assertEquals(Color.BLUE.getRGB(), turned.getRGB(0, 0));
+        assertEquals(Color.RED.getRGB(), turned.getRGB(0, 1));
+
+        //Flipped, red goes to the right
+        BufferedImage flipped = ImageOptimizer.draw(source, 2, 1, 2, false);
+        assertEquals(Color.BLUE.getRGB(), flipped.getRGB(0, 0));
+        assertEquals(Color.RED.getRGB(), flipped.getRGB(1, 0));
+    }
+
+    private static BufferedImage gradient(int width, int height, int type){
+        BufferedImage image = new BufferedImage(width, height, type);
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                int alpha = type == BufferedImage.TYPE_INT_ARGB ? (x * 255 / width) : 255;
+                image.setRGB(x, y, new Color(x * 255 / width, y * 255 / height, (x + y) % 256, alpha).getRGB());
+            }
+        }
+        return image;
+    }
+
+    //Insert an EXIF segment holding only an orientation right after the start of a JPEG
+    private static byte[] withOrientation(byte[] jpeg, int orientation){
+        byte[] exif = {
+                (byte) 0xFF, (byte) 0xE1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        byte[] result = new byte[jpeg.length + exif.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(exif, 0, result, 2, exif.length);
+        System.arraycopy(jpeg, 2, result, 2 + exif.length, jpeg.length - 2);
+        return result;
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.ordersystem.service;
 
+import com.example.ordersystem.model.ImageUploadResult;
 import com.example.ordersystem.model.Item;
 import com.example.ordersystem.model.ItemImage;
+import com.example.ordersystem.repository.ImageContentRepository;
 import com.example.ordersystem.repository.ItemImageRepository;
 import com.example.ordersystem.repository.ItemRepository;
+import com.example.ordersystem.storage.ImageStore;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,18 +16,23 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(SpringExtension.class)
 @Transactional
-@SpringBootTest
+//Store images as uploaded, so the saved content can be compared with the test file
+@SpringBootTest(properties = "app.images.optimize=false")
 public class ItemImageServiceTest {
     @Autowired
     private ItemRepository itemRepository;
@@ -34,6 +42,12 @@ public class ItemImageServiceTest {
     private ItemImageService itemImageService;
     @Autowired
     private ItemImageRepository itemImageRepository;
+    @Autowired
+    private ImageStore imageStore;
+    @Autowired
+    private ImageContentRepository imageContentRepository;
+    @Autowired
+    private ImageUploadService imageUploadService;
 
     @BeforeEach
     public void init(){
@@ -145,4 +159,157 @@ public class ItemImageServiceTest {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void writeItemImageTests(){
+        //Add new item before conducting test case
+        Item newItem = new Item("Hot dog","Very hot","dog.jpg",new BigDecimal("3.99"),"Hotdog",true);
+        Long id = itemService.saveItem(newItem);
+        try{
+            //Create a mock image file from a byte array
+            byte[] byteArray = Files.readAllBytes(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)));
+            MockMultipartFile file = new MockMultipartFile("file", "honey-cake.jpg", "multipart/form-data", byteArray);
+            //Save the image into database
+            itemImageService.saveItemImage(id,file);
+
+            //Check that the streamed image content matches the uploaded file
+            Long imageId = itemImageRepository.findAll().get(0).getId();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            itemImageService.writeItemImage(imageId, out);
+            assertArrayEquals(byteArray, out.toByteArray());
+        }
+        catch(IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void itemImageMetadataTests(){
+        //Add new item before conducting test case
+        Item newItem = new Item("Hot dog","Very hot","dog.jpg",new BigDecimal("3.99"),"Hotdog",true);
+        Long id = itemService.saveItem(newItem);
+        try{
+            //Create a mock image file from a byte array, sent with a wrong content type
+            byte[] byteArray = Files.readAllBytes(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)));
+            MockMultipartFile file = new MockMultipartFile("file", "honey-cake.jpg", "multipart/form-data", byteArray);
+            itemImageService.saveItemImage(id,file);
+
+            //Check that the type is detected from the content, and that the size and hash are recorded
+            ItemImage itemImage = itemImageRepository.findAll().get(0);
+            assertEquals("image/jpeg", itemImage.getContentType());
+            assertEquals(byteArray.length, itemImage.getContentLength());
+            assertEquals(64, itemImage.getContentHash().length());
+            assertTrue(itemImage.getWidth() > 0);
+            assertTrue(itemImage.getHeight() > 0);
+
+            //Save the same content again, both images must have the same hash
+            itemImageService.saveItemImage(id,file);
+            assertEquals(itemImage.getContentHash(), itemImageRepository.findAll().get(1).getContentHash());
+
+            //Check that part of the image can be read on its own
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            itemImageService.writeContent(itemImageService.getImageContent(itemImage, null), 10, 20, out);
+            assertArrayEquals(Arrays.copyOfRange(byteArray, 10, 30), out.toByteArray());
+        }
+        catch(IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void sharedImageContentTests(){
+        //Add new item before conducting test case
+        Item newItem = new Item("Hot dog","Very hot","dog.jpg",new BigDecimal("3.99"),"Hotdog",true);
+        Long id = itemService.saveItem(newItem);
+        try{
+            //Save the same image twice
+            byte[] byteArray = Files.readAllBytes(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)));
+            MockMultipartFile file = new MockMultipartFile("file", "honey-cake.jpg", "multipart/form-data", byteArray);
+            itemImageService.saveItemImage(id,file);
+            itemImageService.saveItemImage(id,file);
+            String hash = itemImageRepository.findAll().get(0).getContentHash();
+            assertTrue(imageStore.contains(hash));
+
+            //The content is kept while another image still uses it
+            itemImageService.deleteItemImage(itemImageService.getAllItemImages().get(0));
+            assertTrue(imageStore.contains(hash));
+
+            //The content is no longer counted once the last image using it is deleted,
+            //but its file is only deleted once the transaction commits, so a rollback keeps it
+            itemImageService.deleteItemImage(itemImageService.getAllItemImages().get(0));
+            assertFalse(imageContentRepository.existsById(hash));
+            assertTrue(imageStore.contains(hash));
+        }
+        catch(IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void deleteItemImagesTests(){
+        //Add two items before conducting test case
+        Long id = itemService.saveItem(new Item("Hot dog","Very hot","dog.jpg",new BigDecimal("3.99"),"Hotdog",true));
+        Long otherId = itemService.saveItem(new Item("Pie","Very good","pie.jpg",new BigDecimal("4.99"),"Pie",true));
+        try{
+            //Save two images of the first item and one image of the second item, all with the same content
+            byte[] byteArray = Files.readAllBytes(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)));
+            MockMultipartFile file = new MockMultipartFile("file", "honey-cake.jpg", "multipart/form-data", byteArray);
+            itemImageService.saveItemImage(id,file);
+            itemImageService.saveItemImage(id,file);
+            itemImageService.saveItemImage(otherId,file);
+            String hash = itemImageRepository.findAll().get(0).getContentHash();
+
+            //Only the images of the first item are deleted, the content is still used by the second item
+            assertEquals(2, itemImageService.deleteItemImages(id));
+            assertEquals(1, itemImageRepository.findAll().size());
+            assertEquals(otherId, itemImageRepository.findAll().get(0).getItem().getId());
+            assertTrue(imageStore.contains(hash));
+
+            //Deleting the images of an item without images does nothing
+            assertEquals(0, itemImageService.deleteItemImages(id));
+        }
+        catch(IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void uploadImagesTests(){
+        //Add new item before conducting test case
+        Item newItem = new Item("Hot dog","Very hot","dog.jpg",new BigDecimal("3.99"),"Hotdog",true);
+        Long id = itemService.saveItem(newItem);
+        try{
+            //Upload two images, a text file and an SVG image at once
+            byte[] byteArray = Files.readAllBytes(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)));
+            List<MultipartFile> files = Arrays.asList(
+                    new MockMultipartFile("img0", "honey-cake.jpg", "image/jpeg", byteArray),
+                    new MockMultipartFile("img1", "notes.txt", "text/plain", "Not an image".getBytes()),
+                    new MockMultipartFile("img2", "honey-cake2.jpg", "image/jpeg", byteArray),
+                    new MockMultipartFile("img3", "cake.svg", "image/svg+xml",
+                            "<svg xmlns=\"http://www.w3.org/2000/svg\"><script>alert(1)</script></svg>".getBytes()));
+            ImageUploadResult result = imageUploadService.uploadImages(id, files);
+
+            //The images are saved in the order they were sent, the text file is not saved,
+            //and neither is the SVG image, whose declared type is not trusted
+            assertEquals(2, result.getUploadedCount());
+            assertEquals(2, result.getFailedCount());
+            assertNull(result.getFiles().get(3).getImageId());
+            assertEquals("notes.txt", result.getFiles().get(1).getFileName());
+            assertNotNull(result.getFiles().get(1).getError());
+            assertNull(result.getFiles().get(1).getImageId());
+            Long firstId = result.getFiles().get(0).getImageId();
+            Long secondId = result.getFiles().get(2).getImageId();
+            assertTrue(firstId < secondId);
+            assertEquals("image/jpeg", itemImageService.getItemImageById(firstId).getContentType());
+            assertEquals(2, itemImageRepository.findAll().size());
+
+            //Nothing is saved for an item which does not exist
+            result = imageUploadService.uploadImages(id + 100, files.subList(0, 1));
+            assertEquals(1, result.getFailedCount());
+            assertEquals(2, itemImageRepository.findAll().size());
+        }
+        catch(IOException e){
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.example.ordersystem.service;
 
 import com.example.ordersystem.model.Item;
+import com.example.ordersystem.model.ItemExport;
+import com.example.ordersystem.model.ItemImportResult;
+import com.example.ordersystem.model.ItemImportRow;
+import com.example.ordersystem.model.ItemPage;
+import com.example.ordersystem.model.ItemSummary;
 import com.example.ordersystem.repository.ItemRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,8 +20,11 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -160,8 +168,8 @@ public class ItemServiceTest {
     @Test
     public void changeAvailabilityTests() {
         //Test that the item availability be changed correctly
-        //Change the available status of item 1 to false
-        itemService.changeAvailability(1L);
+        //Change the available status of item 1 to false, it is in no cart so no cart is removed
+        assertEquals(0, itemService.changeAvailability(1L));
         assertFalse(itemService.getItem(1L).get().isAvailability());
         //Change the available status of item 1 back to true
         itemService.changeAvailability(1L);
@@ -217,7 +225,7 @@ public class ItemServiceTest {
         String sortField = "priceHTL";
         String searchField = "hot";
         //Get the item list based on the conditions above
-        List<Item> itemList = itemService.findListPaging(0, 12, filterField, sortField, searchField);
+        List<ItemSummary> itemList = itemService.findListPaging(0, 12, filterField, sortField, searchField);
         List<Item> fullItemListForTesting = itemService.getAllItems();
         List<Item> tempItemListForTesting = new ArrayList<>();
         List<Item> itemListForTesting = new ArrayList<>();
@@ -266,4 +274,104 @@ public class ItemServiceTest {
         assertEquals(itemListForTesting.size(), itemList.size());
 
     }
+
+    @Test
+    public void searchSpecialCharactersTests() {
+        Item newItem2 = new Item("100% Pie", "Yummy pie", "food.png", new BigDecimal("7"), "Pie", true);
+        itemService.saveItem(newItem2);
+
+        //Wildcards and quotes in the search term are matched literally
+        assertEquals(1, itemService.findNumOfSearchedItems("All", "0%"));
+        assertEquals(0, itemService.findNumOfSearchedItems("All", "_"));
+        assertEquals(0, itemService.findNumOfSearchedItems("All", "' or '1'='1"));
+        assertEquals(0, itemService.findListPaging(0, 12, "All", "id", "' or '1'='1").size());
+        assertEquals(1, itemService.findListPaging(0, 12, "Pie", "id", "0% pie").size());
+    }
+
+    @Test
+    public void exportItemsTests() {
+        Item newItem2 = new Item("Pie", "Yummy pie", "food.png", new BigDecimal("7"), "Pie", true);
+        itemService.saveItem(newItem2);
+
+        //Every item is passed to the consumer in ID order
+        List<ItemExport> exported = new ArrayList<>();
+        assertEquals(2, itemService.exportItems(null, exported::add));
+        assertEquals("Hot dog", exported.get(0).getItemName());
+        assertEquals("Yummy pie", exported.get(1).getItemDescription());
+        assertNotNull(exported.get(1).getUpdatedAt());
+
+        //Only the items changed since the given time are exported
+        assertEquals(2, itemService.exportItems(Instant.now().minus(1, ChronoUnit.HOURS), item -> {}));
+        assertEquals(0, itemService.exportItems(Instant.now().plus(1, ChronoUnit.HOURS), item -> {}));
+    }
+
+    @Test
+    public void importItemsTests() {
+        List<ItemImportRow> rows = List.of(
+                newImportRow("Pie", "Yummy pie", "7", "Pie", ""),
+                newImportRow("", "No name", "7", "Pie", "true"),
+                newImportRow("Cake", "Sweet", "seven", "Cake", "true"),
+                newImportRow("Cake", "Sweet", "12.50", "Cake", "false")
+        );
+
+        //Valid rows are imported, the others are reported with their row number
+        ItemImportResult result = itemService.importItems(rows.iterator());
+        assertEquals(2, result.getImportedCount());
+        assertEquals(2, result.getErrors().size());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        assertEquals(3, result.getErrors().get(1).getRow());
+
+        //The imported items get the next IDs after the existing item
+        assertEquals(3, itemService.findNumOfSearchedItems("All", ""));
+        Item cake = itemService.getItem(3L).get();
+        assertEquals(new BigDecimal("12.50"), cake.getItemPrice());
+        assertFalse(cake.isAvailability());
+        assertTrue(itemService.getItem(2L).get().isAvailability());
+    }
+
+    private ItemImportRow newImportRow(String name, String description, String price, String category, String availability) {
+        ItemImportRow row = new ItemImportRow();
+        row.setItemName(name);
+        row.setItemDescription(description);
+        row.setItemImage("food.png");
+        row.setItemPrice(price);
+        row.setCategory(category);
+        row.setAvailability(availability);
+        return row;
+    }
+
+    @Test
+    public void findPageByCursorTests() {
+        // Add five more items with the same price, so three pages of two items are sorted by price then ID
+        for (int i = 2; i <= 6; i++) {
+            itemService.saveItem(new Item("Cake " + i, "Sweet", "cake.jpg", new BigDecimal("5"), "Cake", true));
+        }
+
+        // Get the first page by index, the cheaper hot dog comes last
+        ItemPage firstPage = itemService.findPage(0, 2, "All", "priceHTL", "");
+        assertEquals(List.of(2L, 3L), getIds(firstPage));
+        assertNull(firstPage.getPrevCursor());
+
+        // Walk forward with the cursors until the last page
+        ItemPage secondPage = itemService.findPageByCursor(firstPage.getNextCursor(), 2, "All", "priceHTL", "");
+        assertEquals(List.of(4L, 5L), getIds(secondPage));
+        ItemPage lastPage = itemService.findPageByCursor(secondPage.getNextCursor(), 2, "All", "priceHTL", "");
+        assertEquals(List.of(6L, 1L), getIds(lastPage));
+        assertNull(lastPage.getNextCursor());
+
+        // Walk back to the first page
+        ItemPage previousPage = itemService.findPageByCursor(lastPage.getPrevCursor(), 2, "All", "priceHTL", "");
+        assertEquals(List.of(4L, 5L), getIds(previousPage));
+        ItemPage backToFirstPage = itemService.findPageByCursor(previousPage.getPrevCursor(), 2, "All", "priceHTL", "");
+        assertEquals(List.of(2L, 3L), getIds(backToFirstPage));
+        assertNull(backToFirstPage.getPrevCursor());
+
+        // A cursor made for another sort or a broken cursor is ignored
+        assertNull(itemService.findPageByCursor(firstPage.getNextCursor(), 2, "All", "name", ""));
+        assertNull(itemService.findPageByCursor("not-a-cursor", 2, "All", "priceHTL", ""));
+    }
+
+    private List<Long> getIds(ItemPage itemPage) {
+        return itemPage.getItems().stream().map(ItemSummary::getId).collect(Collectors.toList());
+    }
 }
@@ -81,6 +81,8 @@ public class OrderServiceTest {
 		
 		//assert the order added was correct by checking the total price
 		assertTrue(order.getPrice().floatValue() == 55.00f);
+		//assert the cart of the user has been emptied by the checkout
+		assertTrue(cartService.getAllCarts(testUser1).isEmpty());
 	}
 
 	@Test
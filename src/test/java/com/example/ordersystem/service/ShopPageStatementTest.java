@@ -0,0 +1,102 @@
+package com.example.ordersystem.service;
+
+import com.example.ordersystem.model.Item;
+import com.example.ordersystem.model.ItemPage;
+import com.example.ordersystem.repository.ItemRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Delete table data and reset auto-generated ID back to 1 for accurate testing environment
+@SqlGroup({
+        @Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, statements = "TRUNCATE items RESTART IDENTITY CASCADE"),
+        @Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, statements = "TRUNCATE items RESTART IDENTITY CASCADE")
+
+})
+@ExtendWith(SpringExtension.class)
+@Transactional
+@SpringBootTest(properties = "app.hibernate.generate-statistics=true")
+public class ShopPageStatementTest {
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private SessionFactory sessionFactory;
+    @PersistenceContext
+    private EntityManager em;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void init() {
+        //Add 15 items, 10 of them are hot dogs
+        for (int i = 1; i <= 15; i++) {
+            String category = i <= 10 ? "Hotdog" : "Pie";
+            itemService.saveItem(new Item(category + " " + i, "Very good", "food.jpg", new BigDecimal(i), category, true));
+        }
+        //Write the items and forget them, so the page is really read from the database
+        em.flush();
+        em.clear();
+
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void clearDatabase() {
+        itemRepository.deleteAll();
+    }
+
+    @Test
+    public void findShopPageTests() {
+        ItemPage itemPage = itemService.findShopPage("", 2, 12, "All", "id", "");
+
+        //The page and the total are read by a single statement, without loading any carts or images
+        assertEquals(1, statistics.getQueryExecutionCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        assertEquals(15, itemPage.getTotalItems());
+        assertEquals(2, itemPage.getPage());
+        assertEquals(3, itemPage.getItems().size());
+        assertEquals(13L, itemPage.getItems().get(0).getId());
+        assertNull(itemPage.getNextCursor());
+        assertNotNull(itemPage.getPrevCursor());
+    }
+
+    @Test
+    public void findShopPageFilteredTests() {
+        ItemPage itemPage = itemService.findShopPage("", 1, 12, "Hotdog", "priceHTL", "dog 1");
+
+        //"Hotdog 1" and "Hotdog 10" match, the total counts the filtered and searched items only
+        assertEquals(1, statistics.getQueryExecutionCount());
+        assertEquals(2, itemPage.getTotalItems());
+        assertEquals("Hotdog 10", itemPage.getItems().get(0).getItemName());
+    }
+
+    @Test
+    public void findShopPageOutOfRangeTests() {
+        //A page past the last page goes back to the first page
+        ItemPage itemPage = itemService.findShopPage("", 5, 12, "All", "id", "");
+
+        assertEquals(15, itemPage.getTotalItems());
+        assertEquals(1, itemPage.getPage());
+        assertEquals(12, itemPage.getItems().size());
+        assertEquals(1L, itemPage.getItems().get(0).getId());
+    }
+}
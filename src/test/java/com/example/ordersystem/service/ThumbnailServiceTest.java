@@ -0,0 +1,72 @@
+package com.example.ordersystem.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailServiceTest {
+
+    @Test
+    public void chooseWidthTests(){
+        ThumbnailService thumbnailService = new ThumbnailService(new int[]{800, 200, 400}, 1, 1, 0, 0, 1);
+        try {
+            //The smallest thumbnail at least as wide as requested is chosen
+            assertEquals(200, thumbnailService.chooseWidth(100));
+            assertEquals(400, thumbnailService.chooseWidth(400));
+            assertEquals(800, thumbnailService.chooseWidth(401));
+            //No thumbnail is wide enough, the original is sent
+            assertNull(thumbnailService.chooseWidth(1200));
+        }
+        finally {
+            thumbnailService.shutdown();
+        }
+    }
+
+    @Test
+    public void scaleTests() throws IOException {
+        try (InputStream content = Files.newInputStream(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)))) {
+            BufferedImage thumbnail = ThumbnailService.scale(content, 200, true);
+            //The thumbnail has the requested width and keeps a positive height
+            assertEquals(200, thumbnail.getWidth());
+            assertTrue(thumbnail.getHeight() > 0);
+        }
+        //Images are never scaled up
+        try (InputStream content = Files.newInputStream(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)))) {
+            BufferedImage thumbnail = ThumbnailService.scale(content, 100000, true);
+            assertTrue(thumbnail.getWidth() < 100000);
+        }
+    }
+
+    @Test
+    public void readDimensionsTests() throws IOException {
+        //The size read from the header matches the decoded image
+        Dimension dimensions;
+        try (InputStream content = Files.newInputStream(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)))) {
+            dimensions = ThumbnailService.readDimensions(content);
+        }
+        BufferedImage image = ImageIO.read(Paths.get("src\\test\\resources\\Honeycomb.jpg".replace("\\", File.separator)).toFile());
+        assertEquals(image.getWidth(), dimensions.width);
+        assertEquals(image.getHeight(), dimensions.height);
+
+        //Content which is not an image has no size
+        assertThrows(IOException.class, () -> ThumbnailService.readDimensions(new ByteArrayInputStream("Not an image".getBytes())));
+    }
+
+    @Test
+    public void thumbnailTypeTests(){
+        //Transparent formats keep their transparency, everything else becomes JPEG
+        assertEquals("image/png", ThumbnailService.thumbnailType("image/png"));
+        assertEquals("image/png", ThumbnailService.thumbnailType("image/gif"));
+        assertEquals("image/jpeg", ThumbnailService.thumbnailType("image/jpeg"));
+    }
+}
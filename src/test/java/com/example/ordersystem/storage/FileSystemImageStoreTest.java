@@ -0,0 +1,144 @@
+package com.example.ordersystem.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileSystemImageStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void stageAndCommitTests() throws IOException {
+        FileSystemImageStore store = new FileSystemImageStore(directory.toString(), 2);
+        byte[] content = "a small image".getBytes(StandardCharsets.US_ASCII);
+
+        //Staged content has its hash and size, but cannot be read yet
+        StagedImage staged = store.stage(new ByteArrayInputStream(content));
+        assertEquals(64, staged.getHash().length());
+        assertEquals(content.length, staged.getSize());
+        assertFalse(store.contains(staged.getHash()));
+
+        store.commit(staged);
+        assertTrue(store.contains(staged.getHash()));
+        assertFalse(Files.exists(staged.getFile()));
+
+        //The whole content and a part of it can be read back
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.writeTo(staged.getHash(), 0, content.length, out);
+        assertArrayEquals(content, out.toByteArray());
+        out.reset();
+        store.writeTo(staged.getHash(), 2, 5, out);
+        assertEquals("small", out.toString(StandardCharsets.US_ASCII));
+
+        store.delete(staged.getHash());
+        assertFalse(store.contains(staged.getHash()));
+    }
+
+    @Test
+    public void sameContentTests() throws IOException {
+        FileSystemImageStore store = new FileSystemImageStore(directory.toString(), 2);
+        byte[] content = "a small image".getBytes(StandardCharsets.US_ASCII);
+
+        //The same content gets the same hash, and is stored only once
+        StagedImage first = store.stage(new ByteArrayInputStream(content));
+        StagedImage second = store.stage(new ByteArrayInputStream(content));
+        assertEquals(first.getHash(), second.getHash());
+        store.commit(first);
+        store.commit(second);
+        assertFalse(Files.exists(second.getFile()));
+        assertEquals(1, Files.list(store.pathOf(first.getHash()).getParent()).count());
+
+        //Discarded content is never stored
+        StagedImage other = store.stage(new ByteArrayInputStream("another image".getBytes(StandardCharsets.US_ASCII)));
+        store.discard(other);
+        assertFalse(Files.exists(other.getFile()));
+        assertFalse(store.contains(other.getHash()));
+    }
+
+    @Test
+    public void openFilesTests() throws IOException {
+        //The store keeps 2 files open, so sending 3 contents in turn closes and opens them again
+        FileSystemImageStore store = new FileSystemImageStore(directory.toString(), 2);
+        String[] hashes = new String[3];
+        for(int i = 0; i < hashes.length; i++){
+            StagedImage staged = store.stage(new ByteArrayInputStream(("image " + i).getBytes(StandardCharsets.US_ASCII)));
+            store.commit(staged);
+            hashes[i] = staged.getHash();
+        }
+        for(int round = 0; round < 2; round++){
+            for(int i = 0; i < hashes.length; i++){
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                store.writeTo(hashes[i], 0, 7, out);
+                assertEquals("image " + i, out.toString(StandardCharsets.US_ASCII));
+            }
+        }
+
+        //A deleted content cannot be sent anymore, even if its file was open
+        store.delete(hashes[2]);
+        assertThrows(IOException.class, () -> store.writeTo(hashes[2], 0, 7, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void thumbnailTests() throws IOException {
+        FileSystemImageStore store = new FileSystemImageStore(directory.toString(), 2);
+        StagedImage original = store.stage(new ByteArrayInputStream("a large image".getBytes(StandardCharsets.US_ASCII)));
+        store.commit(original);
+
+        //A thumbnail is kept under its own key, next to its original
+        String key = ImageStore.thumbnailKey(original.getHash(), 200);
+        StagedImage thumbnail = store.stage(new ByteArrayInputStream("small".getBytes(StandardCharsets.US_ASCII)));
+        store.commit(thumbnail, key);
+        assertTrue(store.contains(key));
+        assertEquals(5, store.size(key));
+
+        //A thumbnail can be deleted on its own, keeping its original
+        store.deleteThumbnail(key);
+        assertFalse(store.contains(key));
+        assertTrue(store.contains(original.getHash()));
+        assertThrows(IllegalArgumentException.class, () -> store.deleteThumbnail(original.getHash()));
+
+        //Thumbnails are deleted with their original
+        store.commit(store.stage(new ByteArrayInputStream("small".getBytes(StandardCharsets.US_ASCII))), key);
+        store.delete(original.getHash());
+        assertFalse(store.contains(original.getHash()));
+        assertFalse(store.contains(key));
+    }
+
+    @Test
+    public void listHashesTests() throws IOException {
+        FileSystemImageStore store = new FileSystemImageStore(directory.toString(), 2);
+        StagedImage original = store.stage(new ByteArrayInputStream("a large image".getBytes(StandardCharsets.US_ASCII)));
+        store.commit(original);
+        store.commit(store.stage(new ByteArrayInputStream("small".getBytes(StandardCharsets.US_ASCII))),
+                ImageStore.thumbnailKey(original.getHash(), 200));
+        //A content is listed once, however many thumbnails it has
+        assertEquals(List.of(original.getHash()), store.listHashes());
+
+        //A thumbnail left without its original is still listed, so the sweep can delete it
+        String orphan = "0".repeat(64);
+        store.commit(store.stage(new ByteArrayInputStream("small".getBytes(StandardCharsets.US_ASCII))),
+                ImageStore.thumbnailKey(orphan, 400));
+        List<String> hashes = store.listHashes();
+        assertEquals(2, hashes.size());
+        assertTrue(hashes.contains(orphan));
+        store.delete(orphan);
+        assertEquals(List.of(original.getHash()), store.listHashes());
+    }
+
+    @Test
+    public void invalidHashTests() {
+        FileSystemImageStore store = new FileSystemImageStore(directory.toString(), 2);
+        //A hash can never point outside the store
+        assertThrows(IllegalArgumentException.class, () -> store.contains("../../etc/passwd"));
+    }
+}